@@ -0,0 +1,264 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import cz.martinbrom.slimybees.core.BeeLifespanService;
+import cz.martinbrom.slimybees.core.BeeLoreService;
+import cz.martinbrom.slimybees.core.BeeMutationDTO;
+import cz.martinbrom.slimybees.core.BeeProductionService;
+import cz.martinbrom.slimybees.core.BeeRegistry;
+import cz.martinbrom.slimybees.core.genetics.BeeGeneticService;
+import cz.martinbrom.slimybees.core.genetics.ChromosomeParser;
+import cz.martinbrom.slimybees.core.genetics.Genome;
+import cz.martinbrom.slimybees.core.genetics.GenomeInterner;
+import cz.martinbrom.slimybees.core.genetics.GenomeParser;
+import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleEffect;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleValue;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import cz.martinbrom.slimybees.core.recipe.ChanceItemStack;
+import cz.martinbrom.slimybees.setup.AlleleUids;
+import cz.martinbrom.slimybees.utils.StringUtils;
+import io.github.thebusybiscuit.slimefun4.core.services.CustomItemDataService;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+import static cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType.CHROMOSOME_COUNT;
+
+/**
+ * A headless SlimyBees setup shared by all benchmarks.
+ * Bukkit is stubbed by MockBukkit and Slimefun is not running at all,
+ * so species are registered directly into the registries (without {@link cz.martinbrom.slimybees.core.BeeBuilder})
+ * and all items are plain vanilla {@link ItemStack}s.
+ * <p>
+ * Everything random is generated from a fixed seed, so each run measures the same data.
+ */
+@ParametersAreNonnullByDefault
+public class BeeEnvironment {
+
+    public static final int SPECIES_COUNT = 64;
+    public static final int GENOME_COUNT = 256;
+
+    private static final long SEED = 20210606L;
+    private static final ChromosomeType[] TYPES = ChromosomeType.values();
+    private static final Material[] PRODUCTS = {
+            Material.HONEYCOMB, Material.HONEY_BOTTLE, Material.SUGAR, Material.SLIME_BALL,
+            Material.REDSTONE, Material.GLOWSTONE_DUST, Material.IRON_NUGGET, Material.GOLD_NUGGET
+    };
+
+    private final Random random = new Random(SEED);
+
+    private final AlleleRegistry alleleRegistry = new AlleleRegistry();
+    private final BeeRegistry beeRegistry;
+    private final GenomeParser genomeParser;
+    private final BeeGeneticService geneticService;
+    private final BeeProductionService productionService;
+
+    private final List<AlleleSpecies> species = new ArrayList<>();
+    private final String[] legacyGenomeStrings = new String[GENOME_COUNT];
+    private final Genome[] genomes = new Genome[GENOME_COUNT];
+
+    public BeeEnvironment(int genomeCacheSize) {
+        if (!MockBukkit.isMocked()) {
+            MockBukkit.mock();
+        }
+
+        Plugin plugin = MockBukkit.createMockPlugin();
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("options.genome-cache-size", genomeCacheSize);
+        yaml.set("options.breeding-cycle-duration", BeeLifespanService.DEFAULT_CYCLE_DURATION);
+        yaml.set("discoveries.display-basic-bees", true);
+        Config config = new Config(new File("target/benchmark-config.yml"), yaml);
+
+        beeRegistry = new BeeRegistry(config);
+        GenomeInterner genomeInterner = new GenomeInterner(config);
+        genomeParser = new GenomeParser(new ChromosomeParser(beeRegistry, alleleRegistry, genomeInterner), genomeInterner);
+
+        BeeLifespanService lifespanService = new BeeLifespanService(config);
+        geneticService = new BeeGeneticService(new CustomItemDataService(plugin, "bee_type"), new BeeLoreService(),
+                beeRegistry, genomeParser, alleleRegistry, lifespanService, genomeInterner);
+        productionService = new BeeProductionService(lifespanService);
+
+        registerAlleles();
+        registerSpecies();
+        registerMutations();
+        beeRegistry.buildMutationTable(alleleRegistry);
+
+        createGenomes();
+    }
+
+    public void tearDown() {
+        if (MockBukkit.isMocked()) {
+            MockBukkit.unmock();
+        }
+    }
+
+    private void registerAlleles() {
+        alleleRegistry.register(ChromosomeType.PRODUCTIVITY, new AlleleValue<>(0.5, true), AlleleUids.PRODUCTIVITY_VERY_LOW);
+        alleleRegistry.register(ChromosomeType.PRODUCTIVITY, new AlleleValue<>(0.75), AlleleUids.PRODUCTIVITY_LOW);
+        alleleRegistry.register(ChromosomeType.PRODUCTIVITY, new AlleleValue<>(1.0, true), AlleleUids.PRODUCTIVITY_NORMAL);
+        alleleRegistry.register(ChromosomeType.PRODUCTIVITY, new AlleleValue<>(1.5), AlleleUids.PRODUCTIVITY_HIGH);
+        alleleRegistry.register(ChromosomeType.PRODUCTIVITY, new AlleleValue<>(2.0), AlleleUids.PRODUCTIVITY_VERY_HIGH);
+
+        alleleRegistry.register(ChromosomeType.FERTILITY, new AlleleValue<>(1, true), AlleleUids.FERTILITY_LOW);
+        alleleRegistry.register(ChromosomeType.FERTILITY, new AlleleValue<>(2, true), AlleleUids.FERTILITY_NORMAL);
+        alleleRegistry.register(ChromosomeType.FERTILITY, new AlleleValue<>(3), AlleleUids.FERTILITY_HIGH);
+        alleleRegistry.register(ChromosomeType.FERTILITY, new AlleleValue<>(4), AlleleUids.FERTILITY_VERY_HIGH);
+
+        alleleRegistry.register(ChromosomeType.LIFESPAN, new AlleleValue<>(15), AlleleUids.LIFESPAN_VERY_SHORT);
+        alleleRegistry.register(ChromosomeType.LIFESPAN, new AlleleValue<>(25), AlleleUids.LIFESPAN_SHORT);
+        alleleRegistry.register(ChromosomeType.LIFESPAN, new AlleleValue<>(30, true), AlleleUids.LIFESPAN_NORMAL);
+        alleleRegistry.register(ChromosomeType.LIFESPAN, new AlleleValue<>(40), AlleleUids.LIFESPAN_LONG);
+        alleleRegistry.register(ChromosomeType.LIFESPAN, new AlleleValue<>(60, true), AlleleUids.LIFESPAN_VERY_LONG);
+
+        alleleRegistry.register(ChromosomeType.RANGE, new AlleleValue<>(1), AlleleUids.RANGE_VERY_SHORT);
+        alleleRegistry.register(ChromosomeType.RANGE, new AlleleValue<>(2, true), AlleleUids.RANGE_SHORT);
+        alleleRegistry.register(ChromosomeType.RANGE, new AlleleValue<>(3, true), AlleleUids.RANGE_NORMAL);
+        alleleRegistry.register(ChromosomeType.RANGE, new AlleleValue<>(4), AlleleUids.RANGE_LONG);
+        alleleRegistry.register(ChromosomeType.RANGE, new AlleleValue<>(5), AlleleUids.RANGE_VERY_LONG);
+
+        alleleRegistry.register(ChromosomeType.PLANT, new AlleleValue<>(Material.AIR), AlleleUids.PLANT_NONE);
+        alleleRegistry.register(ChromosomeType.PLANT, new AlleleValue<>(Material.OXEYE_DAISY, true), AlleleUids.PLANT_OXEYE_DAISY);
+        alleleRegistry.register(ChromosomeType.PLANT, new AlleleValue<>(Material.WHEAT, true), AlleleUids.PLANT_WHEAT);
+
+        alleleRegistry.register(ChromosomeType.EFFECT, new AlleleValue<AlleleEffect.EffectFunction>((l, r) -> {}), AlleleUids.EFFECT_NONE);
+
+        Allele[] defaultTemplate = new Allele[CHROMOSOME_COUNT];
+        defaultTemplate[ChromosomeType.PRODUCTIVITY.ordinal()] = alleleRegistry.get(ChromosomeType.PRODUCTIVITY, AlleleUids.PRODUCTIVITY_NORMAL);
+        defaultTemplate[ChromosomeType.FERTILITY.ordinal()] = alleleRegistry.get(ChromosomeType.FERTILITY, AlleleUids.FERTILITY_NORMAL);
+        defaultTemplate[ChromosomeType.LIFESPAN.ordinal()] = alleleRegistry.get(ChromosomeType.LIFESPAN, AlleleUids.LIFESPAN_NORMAL);
+        defaultTemplate[ChromosomeType.RANGE.ordinal()] = alleleRegistry.get(ChromosomeType.RANGE, AlleleUids.RANGE_NORMAL);
+        defaultTemplate[ChromosomeType.PLANT.ordinal()] = alleleRegistry.get(ChromosomeType.PLANT, AlleleUids.PLANT_NONE);
+        defaultTemplate[ChromosomeType.EFFECT.ordinal()] = alleleRegistry.get(ChromosomeType.EFFECT, AlleleUids.EFFECT_NONE);
+        beeRegistry.registerDefaultTemplate(defaultTemplate);
+    }
+
+    private void registerSpecies() {
+        List<String> fertilityUids = alleleRegistry.getAllUidsByChromosomeType(ChromosomeType.FERTILITY);
+
+        for (int i = 0; i < SPECIES_COUNT; i++) {
+            String uid = StringUtils.nameToUid(ChromosomeType.SPECIES, "benchmark_" + i);
+            AlleleSpecies allele = new AlleleSpecies(uid, StringUtils.uidToName(uid), random.nextBoolean());
+            alleleRegistry.register(ChromosomeType.SPECIES, allele);
+
+            ItemStack princess = new ItemStack(Material.BEE_SPAWN_EGG);
+            ItemStack drone = new ItemStack(Material.BEE_SPAWN_EGG);
+            allele.setPrincessItemStack(princess);
+            allele.setDroneItemStack(drone);
+            allele.setUnknownPrincessItemStack(princess);
+            allele.setUnknownDroneItemStack(drone);
+
+            List<ChanceItemStack> products = new ArrayList<>();
+            int productCount = 1 + random.nextInt(3);
+            for (int j = 0; j < productCount; j++) {
+                Material material = PRODUCTS[random.nextInt(PRODUCTS.length)];
+                products.add(new ChanceItemStack(new ItemStack(material), 0.05 + random.nextInt(6) * 0.05));
+            }
+            allele.setProducts(products);
+
+            Allele[] partialTemplate = new Allele[CHROMOSOME_COUNT];
+            partialTemplate[ChromosomeType.SPECIES.ordinal()] = allele;
+            partialTemplate[ChromosomeType.FERTILITY.ordinal()] = alleleRegistry.get(ChromosomeType.FERTILITY,
+                    fertilityUids.get(random.nextInt(fertilityUids.size())));
+            beeRegistry.registerPartialTemplate(partialTemplate);
+
+            species.add(allele);
+        }
+    }
+
+    private void registerMutations() {
+        // the first few species are "nesting" ones, every other species has 1 - 3 ways to be bred
+        for (int i = 8; i < SPECIES_COUNT; i++) {
+            Set<String> parentPairs = new HashSet<>();
+            int mutationCount = 1 + random.nextInt(3);
+            for (int j = 0; j < mutationCount; j++) {
+                String firstParent = species.get(random.nextInt(i)).getUid();
+                String secondParent = species.get(random.nextInt(i)).getUid();
+
+                // the same mutation cannot be registered twice
+                String pair = firstParent.compareTo(secondParent) < 0 ? firstParent + secondParent : secondParent + firstParent;
+                if (!firstParent.equals(secondParent) && parentPairs.add(pair)) {
+                    double chance = 0.05 + random.nextInt(5) * 0.05;
+                    beeRegistry.registerMutation(new BeeMutationDTO(firstParent, secondParent, species.get(i).getUid(), chance));
+                }
+            }
+        }
+    }
+
+    private void createGenomes() {
+        for (int i = 0; i < GENOME_COUNT; i++) {
+            StringJoiner joiner = new StringJoiner(GenomeParser.DELIMITER);
+            for (ChromosomeType type : TYPES) {
+                joiner.add(getRandomUid(type) + ChromosomeParser.DELIMITER + getRandomUid(type));
+            }
+
+            legacyGenomeStrings[i] = joiner.toString();
+            genomes[i] = genomeParser.parse(legacyGenomeStrings[i]);
+        }
+    }
+
+    @Nonnull
+    private String getRandomUid(ChromosomeType type) {
+        List<String> uids = alleleRegistry.getAllUidsByChromosomeType(type);
+        return uids.get(random.nextInt(uids.size()));
+    }
+
+    @Nonnull
+    public AlleleRegistry getAlleleRegistry() {
+        return alleleRegistry;
+    }
+
+    @Nonnull
+    public BeeRegistry getBeeRegistry() {
+        return beeRegistry;
+    }
+
+    @Nonnull
+    public GenomeParser getGenomeParser() {
+        return genomeParser;
+    }
+
+    @Nonnull
+    public BeeGeneticService getGeneticService() {
+        return geneticService;
+    }
+
+    @Nonnull
+    public BeeProductionService getProductionService() {
+        return productionService;
+    }
+
+    @Nonnull
+    public List<AlleleSpecies> getSpecies() {
+        return Collections.unmodifiableList(species);
+    }
+
+    @Nonnull
+    public String[] getLegacyGenomeStrings() {
+        return legacyGenomeStrings.clone();
+    }
+
+    @Nonnull
+    public Genome[] getGenomes() {
+        return genomes.clone();
+    }
+
+}
@@ -0,0 +1,60 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.martinbrom.slimybees.core.genetics.BeeGeneticService;
+import cz.martinbrom.slimybees.core.genetics.BreedingModifierDTO;
+import cz.martinbrom.slimybees.core.genetics.BreedingResultDTO;
+import cz.martinbrom.slimybees.core.genetics.Genome;
+
+/**
+ * Measures a whole breeding process, including the creation of the children {@link org.bukkit.inventory.ItemStack}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BeeGeneticServiceBenchmark {
+
+    private BeeEnvironment environment;
+    private BeeGeneticService geneticService;
+    private Genome[] genomes;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new BeeEnvironment(4096);
+        geneticService = environment.getGeneticService();
+        genomes = environment.getGenomes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.tearDown();
+    }
+
+    @Benchmark
+    public BreedingResultDTO breed() {
+        index = (index + 1) % BeeEnvironment.GENOME_COUNT;
+        Genome princess = genomes[index];
+        Genome drone = genomes[BeeEnvironment.GENOME_COUNT - 1 - index];
+
+        return geneticService.breed(princess, drone, BreedingModifierDTO.DEFAULT);
+    }
+
+}
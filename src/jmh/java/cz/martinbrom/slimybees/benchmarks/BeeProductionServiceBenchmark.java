@@ -0,0 +1,65 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.martinbrom.slimybees.core.BeeProductionService;
+import cz.martinbrom.slimybees.core.genetics.BreedingModifierDTO;
+import cz.martinbrom.slimybees.core.genetics.Genome;
+
+/**
+ * Measures the products of a single princess lifetime.
+ * Higher modifiers simulate hives with frames, which produce more and live longer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BeeProductionServiceBenchmark {
+
+    @Param({ "1", "4" })
+    private double modifier;
+
+    private BeeEnvironment environment;
+    private BeeProductionService productionService;
+    private BreedingModifierDTO breedingModifier;
+    private Genome[] genomes;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new BeeEnvironment(4096);
+        productionService = environment.getProductionService();
+        breedingModifier = new BreedingModifierDTO(modifier, modifier);
+        genomes = environment.getGenomes();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.tearDown();
+    }
+
+    @Benchmark
+    public List<ItemStack> produce() {
+        index = (index + 1) % BeeEnvironment.GENOME_COUNT;
+        return productionService.produce(genomes[index], breedingModifier);
+    }
+
+}
@@ -0,0 +1,75 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.martinbrom.slimybees.core.BeeMutationDTO;
+import cz.martinbrom.slimybees.core.BeeMutationTable;
+import cz.martinbrom.slimybees.core.BeeRegistry;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
+
+/**
+ * Compares the mutation lookup by parent uids with the precomputed {@link BeeMutationTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BeeRegistryBenchmark {
+
+    private BeeEnvironment environment;
+    private BeeRegistry beeRegistry;
+    private BeeMutationTable mutationTable;
+    private List<AlleleSpecies> species;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new BeeEnvironment(4096);
+        beeRegistry = environment.getBeeRegistry();
+        mutationTable = beeRegistry.getMutationTable();
+        species = environment.getSpecies();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.tearDown();
+    }
+
+    @Benchmark
+    public List<BeeMutationDTO> getMutationsForParents() {
+        index = (index + 1) % (BeeEnvironment.SPECIES_COUNT * BeeEnvironment.SPECIES_COUNT);
+        return beeRegistry.getMutationsForParents(getFirstParent(), getSecondParent());
+    }
+
+    @Benchmark
+    public BeeMutationDTO chooseMutation() {
+        index = (index + 1) % (BeeEnvironment.SPECIES_COUNT * BeeEnvironment.SPECIES_COUNT);
+        return mutationTable.chooseMutation(getFirstParent(), getSecondParent(), ThreadLocalRandom.current().nextDouble());
+    }
+
+    private AlleleSpecies getFirstParent() {
+        return species.get(index / BeeEnvironment.SPECIES_COUNT);
+    }
+
+    private AlleleSpecies getSecondParent() {
+        return species.get(index % BeeEnvironment.SPECIES_COUNT);
+    }
+
+}
@@ -0,0 +1,83 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.martinbrom.slimybees.core.genetics.Genome;
+import cz.martinbrom.slimybees.core.genetics.GenomeParser;
+
+/**
+ * Measures reading and writing of serialized {@link Genome}s.
+ * A genome cache size of 1 makes every parse a cache miss, because the benchmark
+ * cycles through {@link BeeEnvironment#GENOME_COUNT} different genomes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GenomeParserBenchmark {
+
+    @Param({ "1", "4096" })
+    private int genomeCacheSize;
+
+    private BeeEnvironment environment;
+    private GenomeParser genomeParser;
+    private Genome[] genomes;
+    private String[] compactGenomeStrings;
+    private String[] legacyGenomeStrings;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new BeeEnvironment(genomeCacheSize);
+        genomeParser = environment.getGenomeParser();
+        genomes = environment.getGenomes();
+        legacyGenomeStrings = environment.getLegacyGenomeStrings();
+
+        compactGenomeStrings = new String[genomes.length];
+        for (int i = 0; i < genomes.length; i++) {
+            compactGenomeStrings[i] = genomeParser.serialize(genomes[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.tearDown();
+    }
+
+    @Benchmark
+    public Genome parseCompact() {
+        return genomeParser.parse(compactGenomeStrings[nextIndex()]);
+    }
+
+    @Benchmark
+    public Genome parseLegacy() {
+        return genomeParser.parse(legacyGenomeStrings[nextIndex()]);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return genomeParser.serialize(genomes[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        index = (index + 1) % BeeEnvironment.GENOME_COUNT;
+        return index;
+    }
+
+}
@@ -0,0 +1,112 @@
+package cz.martinbrom.slimybees.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cz.martinbrom.slimybees.core.recipe.AbstractRecipe;
+import cz.martinbrom.slimybees.core.recipe.GuaranteedRecipe;
+import cz.martinbrom.slimybees.core.recipe.RandomRecipe;
+import cz.martinbrom.slimybees.core.recipe.RecipeIndex;
+import cz.martinbrom.slimybees.core.recipe.RecipeMatchService;
+import cz.martinbrom.slimybees.core.recipe.RecipeOutcome;
+
+/**
+ * Measures matching machine inputs against a recipe list similar to the centrifuge one.
+ * The first input matches the last recipe, the second input matches no recipe at all,
+ * which are the worst cases of the linear search.
+ * The same inputs are matched by a {@link RecipeIndex} for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RecipeMatchServiceBenchmark {
+
+    @Param({ "8", "64" })
+    private int recipeCount;
+
+    private BeeEnvironment environment;
+    private List<AbstractRecipe> recipes;
+    private RecipeIndex recipeIndex;
+    private List<ItemStack> matchingInput;
+    private List<ItemStack> missingInput;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        environment = new BeeEnvironment(4096);
+
+        List<Material> materials = new ArrayList<>();
+        for (Material material : Material.values()) {
+            if (material.isItem() && !material.isAir() && !material.isLegacy()) {
+                materials.add(material);
+            }
+        }
+
+        recipes = new ArrayList<>();
+        for (int i = 0; i < recipeCount; i++) {
+            ItemStack ingredient = new ItemStack(materials.get(i));
+            RandomRecipe recipe = new RandomRecipe(ingredient);
+            recipe.addOutput(new ItemStack(Material.HONEYCOMB), 0.8);
+            recipe.addOutput(new ItemStack(Material.HONEY_BOTTLE), 0.2);
+            recipe.setDuration(40);
+            recipes.add(recipe);
+        }
+
+        recipeIndex = new RecipeIndex(recipes);
+        matchingInput = Arrays.asList(new ItemStack(materials.get(recipeCount - 1)), null);
+        missingInput = Collections.singletonList(new ItemStack(materials.get(recipeCount)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.tearDown();
+    }
+
+    @Benchmark
+    public GuaranteedRecipe matchLast() {
+        return RecipeMatchService.match(matchingInput, recipes);
+    }
+
+    @Benchmark
+    public GuaranteedRecipe matchNone() {
+        return RecipeMatchService.match(missingInput, recipes);
+    }
+
+    @Benchmark
+    public GuaranteedRecipe matchLastIndexed() {
+        return recipeIndex.match(matchingInput);
+    }
+
+    @Benchmark
+    public GuaranteedRecipe matchNoneIndexed() {
+        return recipeIndex.match(missingInput);
+    }
+
+    @Benchmark
+    public RecipeOutcome sampleLastIndexed() {
+        AbstractRecipe recipe = recipeIndex.find(matchingInput);
+        return recipe == null ? null : recipe.sample(1);
+    }
+
+}
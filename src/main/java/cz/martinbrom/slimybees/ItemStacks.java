@@ -149,7 +149,8 @@ public class ItemStacks {
             Material.GRINDSTONE,
             "&7离心机",
             "",
-            EXTRACTS_MATERIALS_FROM_COMBS);
+            EXTRACTS_MATERIALS_FROM_COMBS,
+            "&8⇨ &7潜行时点击可一次处理发射器中的所有蜂巢");
 
     public static final SlimefunItemStack ELECTRIC_CENTRIFUGE = new SlimefunItemStack(
             "ELECTRIC_CENTRIFUGE",
@@ -171,7 +172,8 @@ public class ItemStacks {
             "",
             LoreBuilder.machine(MachineTier.ADVANCED, MachineType.MACHINE),
             LoreBuilder.speed(4),
-            LoreBuilder.powerPerSecond(36));
+            LoreBuilder.powerPerSecond(36),
+            "&8⇨ &7一次最多处理 &e8 &7个蜂巢 (每个蜂巢都耗电)");
     // </editor-fold>
 
     // <editor-fold desc="Various" defaultstate="collapsed">
@@ -1,8 +1,11 @@
 package cz.martinbrom.slimybees;
 
 import java.io.File;
-import java.util.Iterator;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.Nonnull;
@@ -27,16 +30,26 @@ import cz.martinbrom.slimybees.core.BeeLoreService;
 import cz.martinbrom.slimybees.core.BeeProductionService;
 import cz.martinbrom.slimybees.core.BeeRegistry;
 import cz.martinbrom.slimybees.core.BlockSearchService;
+import cz.martinbrom.slimybees.core.NetworkSyncService;
+import cz.martinbrom.slimybees.core.OfflineProfileCache;
+import cz.martinbrom.slimybees.core.ProfileSaveService;
 import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
 import cz.martinbrom.slimybees.core.SlimyBeesRegistry;
 import cz.martinbrom.slimybees.core.category.BeeAtlasCategoryFactory;
 import cz.martinbrom.slimybees.core.category.BeeAtlasNavigationService;
 import cz.martinbrom.slimybees.core.genetics.BeeGeneticService;
 import cz.martinbrom.slimybees.core.genetics.ChromosomeParser;
+import cz.martinbrom.slimybees.core.genetics.GenomeInterner;
 import cz.martinbrom.slimybees.core.genetics.GenomeParser;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleService;
+import cz.martinbrom.slimybees.core.machine.HiveEffectDispatcher;
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.SqlitePlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.YamlPlayerDataStorage;
 import cz.martinbrom.slimybees.listeners.BeeEnterListener;
+import cz.martinbrom.slimybees.listeners.HiveChunkListener;
+import cz.martinbrom.slimybees.listeners.PlantIndexListener;
 import cz.martinbrom.slimybees.listeners.SlimyBeesPlayerProfileListener;
 import cz.martinbrom.slimybees.listeners.TreeGrowListener;
 import cz.martinbrom.slimybees.setup.AlleleSetup;
@@ -68,15 +81,23 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
     private final BeeLoreService beeLoreService = new BeeLoreService();
     private final BlockSearchService blockSearchService = new BlockSearchService();
     private final AlleleService alleleService = new AlleleService(alleleRegistry);
-    private final ChromosomeParser chromosomeParser = new ChromosomeParser(beeRegistry, alleleRegistry);
-    private final GenomeParser genomeParser = new GenomeParser(chromosomeParser);
+    private final GenomeInterner genomeInterner = new GenomeInterner(config);
+    private final ChromosomeParser chromosomeParser = new ChromosomeParser(beeRegistry, alleleRegistry, genomeInterner);
+    private final GenomeParser genomeParser = new GenomeParser(chromosomeParser, genomeInterner);
     private final BeeLifespanService beeLifespanService = new BeeLifespanService(config);
     private final BeeGeneticService beeGeneticService = new BeeGeneticService(beeTypeService, beeLoreService, beeRegistry,
-            genomeParser, alleleRegistry, beeLifespanService);
+            genomeParser, alleleRegistry, beeLifespanService, genomeInterner);
     private final BeeProductionService beeProductionService = new BeeProductionService(beeLifespanService);
-    private final BeeDiscoveryService beeDiscoveryService = new BeeDiscoveryService(alleleRegistry, config);
+    private final PlayerDataStorage playerDataStorage = createPlayerDataStorage();
+    private final ProfileSaveService profileSaveService = new ProfileSaveService(slimyBeesRegistry, playerDataStorage,
+            getLogger(), config);
+    private final OfflineProfileCache offlineProfileCache = new OfflineProfileCache(config, this::unloadProfile);
+    private final BeeDiscoveryService beeDiscoveryService = new BeeDiscoveryService(alleleRegistry, playerDataStorage, config);
+    private final NetworkSyncService networkSyncService = new NetworkSyncService(this, slimyBeesRegistry,
+            playerDataStorage, profileSaveService, beeDiscoveryService, config);
     private final BeeAnalysisService beeAnalysisService = new BeeAnalysisService(beeGeneticService,
             beeDiscoveryService, beeLoreService);
+    private final HiveEffectDispatcher hiveEffectDispatcher = new HiveEffectDispatcher(this, config);
     private final BeeAtlasNavigationService navigationService = new BeeAtlasNavigationService();
     private final BeeAtlasCategoryFactory categoryFactory = new BeeAtlasCategoryFactory(beeLoreService, beeRegistry,
             beeGeneticService, alleleRegistry, navigationService);
@@ -117,7 +138,21 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         AlleleSetup.setUp();
         BeeSetup.setUp(this);
 
+        // bee items reference alleles by their ids, so newly assigned ids have to be persisted
+        alleleRegistry.saveIds();
+        beeRegistry.buildMutationTable(alleleRegistry);
+
+        try {
+            playerDataStorage.open();
+        } catch (IOException e) {
+            logger().log(Level.SEVERE, "Could not open the player data storage, disabling SlimyBees", e);
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
         beeDiscoveryService.loadGlobalDiscoveries();
+        getServer().getScheduler().runTaskAsynchronously(this, beeDiscoveryService::loadPersonalProgress);
+        networkSyncService.start();
 
         CommandSetup.setUp(this);
 
@@ -125,7 +160,7 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         registerNestPopulators();
 
         int interval = 5;
-        getServer().getScheduler().runTaskTimer(this, this::saveAllPlayers, 2000L, interval * 60L * 20L);
+        getServer().getScheduler().runTaskTimer(this, this::saveAll, 2000L, interval * 60L * 20L);
 
         logger().info("SlimyBees 加载完成");
     }
@@ -137,11 +172,8 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         Bukkit.getScheduler().cancelTasks(this);
 
         if (!isUnitTest) {
-            slimyBeesRegistry.getPlayerProfiles().values().iterator().forEachRemaining(profile -> {
-                if (profile.isDirty()) {
-                    profile.save();
-                }
-            });
+            profileSaveService.shutdown();
+            playerDataStorage.close(10, TimeUnit.SECONDS);
         }
     }
 
@@ -232,11 +264,31 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         return instance().beeLoreService;
     }
 
+    @Nonnull
+    public static ProfileSaveService getProfileSaveService() {
+        return instance().profileSaveService;
+    }
+
+    @Nonnull
+    public static PlayerDataStorage getPlayerDataStorage() {
+        return instance().playerDataStorage;
+    }
+
+    @Nonnull
+    public static OfflineProfileCache getOfflineProfileCache() {
+        return instance().offlineProfileCache;
+    }
+
     @Nonnull
     public static BlockSearchService getBlockSearchService() {
         return instance().blockSearchService;
     }
 
+    @Nonnull
+    public static HiveEffectDispatcher getHiveEffectDispatcher() {
+        return instance().hiveEffectDispatcher;
+    }
+
     /**
      * Returns the global instance of {@link SlimyBeesPlugin}.
      * This may return null if the {@link Plugin} was disabled.
@@ -272,7 +324,9 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
      */
     private void registerListeners(SlimyBeesPlugin plugin) {
         new BeeEnterListener(plugin);
-        new SlimyBeesPlayerProfileListener(plugin);
+        new SlimyBeesPlayerProfileListener(plugin, offlineProfileCache);
+        new PlantIndexListener(plugin, blockSearchService);
+        new HiveChunkListener(plugin);
 
         double treeSpawnChance = config.getDouble("nests.tree-growth-chance");
         if (treeSpawnChance > 0) {
@@ -280,6 +334,45 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         }
     }
 
+    private void saveAll() {
+        profileSaveService.saveAll();
+        playerDataStorage.compact();
+    }
+
+    /**
+     * Creates the {@link PlayerDataStorage} selected in the config.
+     */
+    @Nonnull
+    private PlayerDataStorage createPlayerDataStorage() {
+        YamlPlayerDataStorage yamlStorage = new YamlPlayerDataStorage(alleleRegistry, getLogger());
+
+        String type = config.getString("options.player-data-storage");
+        if ("sqlite".equalsIgnoreCase(type)) {
+            return new SqlitePlayerDataStorage(Paths.get("data-storage/SlimyBees/players.db"), alleleRegistry,
+                    yamlStorage, getLogger(), false);
+        } else if ("shared".equalsIgnoreCase(type)) {
+            return new SqlitePlayerDataStorage(Paths.get(config.getString("options.shared-database-file")), alleleRegistry,
+                    yamlStorage, getLogger(), true);
+        } else if (!"yaml".equalsIgnoreCase(type)) {
+            getLogger().log(Level.WARNING, "Unknown player data storage \"{0}\", using yaml instead", type);
+        }
+
+        return yamlStorage;
+    }
+
+    /**
+     * Unloads a {@link SlimyBeesPlayerProfile} evicted from the {@link OfflineProfileCache}.
+     * Eviction can happen on any thread, but profiles can only be saved from the main thread.
+     */
+    private void unloadProfile(SlimyBeesPlayerProfile profile) {
+        profile.markForDeletion();
+
+        // otherwise the profile is unloaded during the next periodic save or on shutdown
+        if (isEnabled()) {
+            getServer().getScheduler().runTask(this, () -> profileSaveService.unload(profile));
+        }
+    }
+
     /**
      * This method registers all of our {@link NestPopulator}s.
      */
@@ -316,23 +409,4 @@ public class SlimyBeesPlugin extends JavaPlugin implements SlimefunAddon {
         }
     }
 
-    private void saveAllPlayers() {
-        Iterator<SlimyBeesPlayerProfile> iterator = slimyBeesRegistry
-                .getPlayerProfiles()
-                .values()
-                .iterator();
-
-        while (iterator.hasNext()) {
-            SlimyBeesPlayerProfile profile = iterator.next();
-
-            if (profile.isDirty()) {
-                profile.save();
-            }
-
-            if (profile.isMarkedForDeletion()) {
-                iterator.remove();
-            }
-        }
-    }
-
 }
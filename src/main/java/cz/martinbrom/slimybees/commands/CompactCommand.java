@@ -0,0 +1,139 @@
+package cz.martinbrom.slimybees.commands;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+
+import cz.martinbrom.slimybees.SlimyBeesPlugin;
+import cz.martinbrom.slimybees.core.ProfileSaveService;
+import cz.martinbrom.slimybees.core.SlimyBeesRegistry;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.YamlPlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.YamlProfileCompactor;
+
+@ParametersAreNonnullByDefault
+public class CompactCommand extends AbstractCommand {
+
+    private static final int PROGRESS_BAR_LENGTH = 20;
+    private static final long PROGRESS_INTERVAL_TICKS = 40L;
+
+    private final PlayerDataStorage playerDataStorage;
+    private final AlleleRegistry alleleRegistry;
+    private final SlimyBeesRegistry registry;
+    private final ProfileSaveService profileSaveService;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CompactCommand(PlayerDataStorage playerDataStorage, AlleleRegistry alleleRegistry,
+                          SlimyBeesRegistry registry, ProfileSaveService profileSaveService) {
+        super("压缩", "重写所有玩家数据文件, 移除未注册的物种.", "slimybees.command.compact");
+
+        this.playerDataStorage = playerDataStorage;
+        this.alleleRegistry = alleleRegistry;
+        this.registry = registry;
+        this.profileSaveService = profileSaveService;
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, String[] args) {
+        if (!(playerDataStorage instanceof YamlPlayerDataStorage)) {
+            sender.sendMessage(ChatColor.RED + "只能压缩 yaml 玩家数据存储!");
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage(ChatColor.RED + "玩家数据已经在压缩中!");
+            return;
+        }
+
+        SlimyBeesPlugin plugin = SlimyBeesPlugin.instance();
+        YamlProfileCompactor compactor = new YamlProfileCompactor((YamlPlayerDataStorage) playerDataStorage,
+                alleleRegistry, registry, profileSaveService, SlimyBeesPlugin.logger());
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        sender.sendMessage(ChatColor.GRAY + "正在使用 " + parallelism + " 个线程压缩玩家数据...");
+        BukkitTask progressTask = Bukkit.getScheduler().runTaskTimer(plugin,
+                () -> sender.sendMessage(formatProgress(compactor)), PROGRESS_INTERVAL_TICKS, PROGRESS_INTERVAL_TICKS);
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                compactor.run(parallelism);
+            } finally {
+                running.set(false);
+                if (plugin.isEnabled()) {
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        progressTask.cancel();
+                        sendSummary(sender, compactor);
+                    });
+                }
+            }
+        });
+    }
+
+    @Nonnull
+    private static String formatProgress(YamlProfileCompactor compactor) {
+        int processed = compactor.getProcessedFiles();
+        int total = compactor.getTotalFiles();
+        int filled = total == 0 ? PROGRESS_BAR_LENGTH : processed * PROGRESS_BAR_LENGTH / total;
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(ChatColor.DARK_GRAY).append('[').append(ChatColor.GREEN);
+        for (int i = 0; i < PROGRESS_BAR_LENGTH; i++) {
+            if (i == filled) {
+                builder.append(ChatColor.GRAY);
+            }
+
+            builder.append('|');
+        }
+
+        builder.append(ChatColor.DARK_GRAY).append("] ")
+                .append(ChatColor.WHITE).append(total == 0 ? 100 : processed * 100 / total).append("% ")
+                .append(ChatColor.GRAY).append(processed).append(" / ").append(total)
+                .append(" (").append(formatThroughput(compactor)).append(')');
+
+        return builder.toString();
+    }
+
+    private static void sendSummary(CommandSender sender, YamlProfileCompactor compactor) {
+        sender.sendMessage(new String[] {
+                ChatColor.GRAY + "玩家数据压缩完成, 用时 " + ChatColor.WHITE
+                        + String.format("%.1f s", compactor.getElapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+                        + ChatColor.GRAY + " (" + formatThroughput(compactor) + ")",
+                "",
+                ChatColor.GRAY + "已处理文件: " + ChatColor.WHITE + compactor.getProcessedFiles(),
+                ChatColor.GRAY + "已重写文件: " + ChatColor.WHITE + compactor.getRewrittenFiles(),
+                ChatColor.GRAY + "已跳过文件: " + ChatColor.WHITE + compactor.getSkippedFiles(),
+                ChatColor.GRAY + "失败文件: " + ChatColor.WHITE + compactor.getFailedFiles(),
+                ChatColor.GRAY + "已移除物种: " + ChatColor.WHITE + compactor.getPrunedSpecies(),
+                ChatColor.GRAY + "大小: " + ChatColor.WHITE + formatKilobytes(compactor.getBytesBefore())
+                        + " -> " + formatKilobytes(compactor.getBytesAfter())
+        });
+    }
+
+    @Nonnull
+    private static String formatThroughput(YamlProfileCompactor compactor) {
+        double seconds = compactor.getElapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("%.0f 个文件/秒", seconds <= 0 ? 0 : compactor.getProcessedFiles() / seconds);
+    }
+
+    @Nonnull
+    private static String formatKilobytes(long bytes) {
+        return String.format("%.1f kB", bytes / 1024.0);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> onTab(CommandSender sender, String[] args) {
+        return Collections.emptyList();
+    }
+
+}
@@ -3,8 +3,6 @@ package cz.martinbrom.slimybees.commands;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -14,7 +12,9 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import cz.martinbrom.slimybees.core.BeeDiscoveryService;
+import cz.martinbrom.slimybees.core.Leaderboard;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.utils.CommandUtils;
 import io.github.thebusybiscuit.slimefun4.implementation.Slimefun;
 
 @ParametersAreNonnullByDefault
@@ -39,32 +39,30 @@ public class GlobalProgressCommand extends AbstractCommand {
 
         Player p = (Player) sender;
         int totalSpecies = alleleRegistry.getAllSpecies().size();
-        Map<String, String> discoveries = discoveryService.getDiscoveryInfo();
+        Leaderboard<String> leaderboard = discoveryService.getGlobalLeaderboard();
 
-        // sort players by their global discovery count
-        int discoveredSpecies = 0;
-        TreeMap<String, Integer> countsByPlayerName = new TreeMap<>();
-        for (String playerName : discoveries.values()) {
-            discoveredSpecies++;
-
-            int value = countsByPlayerName.get(playerName) == null ? 0 : countsByPlayerName.get(playerName);
-            countsByPlayerName.put(playerName, value + 1);
-        }
+        int pageCount = leaderboard.getPageCount(CommandUtils.PAGE_SIZE);
+        int page = CommandUtils.parsePage(args, 1, pageCount);
 
         // add global discovery header
-        int size = countsByPlayerName.size();
         List<String> messages = new ArrayList<>();
-        messages.add(ChatColor.GRAY + "全局发现进度" + ChatColor.WHITE + " (" + discoveredSpecies +  " / " + totalSpecies + ")");
+        messages.add(ChatColor.GRAY + "全局发现进度" + ChatColor.WHITE
+                + " (" + discoveryService.getGlobalDiscoveryCount() + " / " + totalSpecies + ")");
         messages.add("");
 
-        // create a list of all players who hold a global discovery
-        String playerName = p.getName();
-        if (size > 0) {
-            for (Map.Entry<String, Integer> entry : countsByPlayerName.entrySet()) {
+        // list the players who hold the most global discoveries
+        List<Leaderboard.Entry<String>> entries = leaderboard.getPage(page, CommandUtils.PAGE_SIZE);
+        if (!entries.isEmpty()) {
+            String playerName = p.getName();
+            int rank = page * CommandUtils.PAGE_SIZE;
+            for (Leaderboard.Entry<String> entry : entries) {
                 // bold if the player who sent the command is the same as this one
                 String color = "" + ChatColor.GRAY + (entry.getKey().equals(playerName) ? ChatColor.BOLD : "");
-                messages.add(color + entry.getKey() + ": " + entry.getValue());
+                messages.add(color + ++rank + ". " + entry.getKey() + ": " + entry.getScore());
             }
+
+            messages.add("");
+            messages.add(CommandUtils.formatPageFooter(page, pageCount));
         } else {
             messages.add(ChatColor.DARK_GRAY + "还没有发现。祝你好运!");
         }
@@ -0,0 +1,74 @@
+package cz.martinbrom.slimybees.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import cz.martinbrom.slimybees.core.BeeDiscoveryService;
+import cz.martinbrom.slimybees.core.Leaderboard;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.utils.CommandUtils;
+
+@ParametersAreNonnullByDefault
+public class LeaderboardCommand extends AbstractCommand {
+
+    private final BeeDiscoveryService discoveryService;
+    private final AlleleRegistry alleleRegistry;
+
+    public LeaderboardCommand(BeeDiscoveryService discoveryService, AlleleRegistry alleleRegistry) {
+        super("排行榜", "显示玩家发现进度排行榜.");
+
+        this.discoveryService = discoveryService;
+        this.alleleRegistry = alleleRegistry;
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, String[] args) {
+        int totalSpecies = alleleRegistry.getAllSpecies().size();
+        Leaderboard<UUID> leaderboard = discoveryService.getPersonalLeaderboard();
+
+        int pageCount = leaderboard.getPageCount(CommandUtils.PAGE_SIZE);
+        int page = CommandUtils.parsePage(args, 1, pageCount);
+
+        List<String> messages = new ArrayList<>();
+        messages.add(ChatColor.GRAY + "发现进度排行榜" + ChatColor.WHITE + " (" + totalSpecies + " 物种)");
+        messages.add("");
+
+        List<Leaderboard.Entry<UUID>> entries = leaderboard.getPage(page, CommandUtils.PAGE_SIZE);
+        if (!entries.isEmpty()) {
+            UUID senderUuid = sender instanceof Player ? ((Player) sender).getUniqueId() : null;
+            int rank = page * CommandUtils.PAGE_SIZE;
+            for (Leaderboard.Entry<UUID> entry : entries) {
+                // only the players on this page need their names
+                String name = Bukkit.getOfflinePlayer(entry.getKey()).getName();
+
+                // bold if the player who sent the command is the same as this one
+                String color = "" + ChatColor.GRAY + (entry.getKey().equals(senderUuid) ? ChatColor.BOLD : "");
+                messages.add(color + ++rank + ". " + (name == null ? entry.getKey() : name) + ": " + entry.getScore());
+            }
+
+            messages.add("");
+            messages.add(CommandUtils.formatPageFooter(page, pageCount));
+        } else {
+            messages.add(ChatColor.DARK_GRAY + "还没有发现。祝你好运!");
+        }
+
+        sender.sendMessage(messages.toArray(new String[0]));
+    }
+
+    @Nonnull
+    @Override
+    public List<String> onTab(CommandSender sender, String[] args) {
+        return Collections.emptyList();
+    }
+
+}
@@ -0,0 +1,53 @@
+package cz.martinbrom.slimybees.commands;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import cz.martinbrom.slimybees.core.ProfileSaveService;
+
+@ParametersAreNonnullByDefault
+public class StorageCommand extends AbstractCommand {
+
+    private final ProfileSaveService profileSaveService;
+
+    public StorageCommand(ProfileSaveService profileSaveService) {
+        super("存储", "显示玩家数据保存统计.", "slimybees.command.storage");
+
+        this.profileSaveService = profileSaveService;
+    }
+
+    @Override
+    public void onExecute(CommandSender sender, String[] args) {
+        sender.sendMessage(new String[] {
+                ChatColor.GRAY + "玩家数据保存",
+                "",
+                ChatColor.GRAY + "已保存的档案: " + ChatColor.WHITE + profileSaveService.getSavedProfiles(),
+                ChatColor.GRAY + "保存失败: " + ChatColor.WHITE + profileSaveService.getFailedSaves(),
+                ChatColor.GRAY + "等待保存: " + ChatColor.WHITE + profileSaveService.getPendingSaves(),
+                ChatColor.GRAY + "平均写入耗时: " + ChatColor.WHITE + formatMillis(profileSaveService.getAverageSaveNanos()),
+                ChatColor.GRAY + "最慢写入耗时: " + ChatColor.WHITE + formatMillis(profileSaveService.getMaxSaveNanos()),
+                ChatColor.GRAY + "上次快照 (主线程): " + ChatColor.WHITE
+                        + formatMillis(profileSaveService.getLastSnapshotNanos())
+                        + ", 共 " + profileSaveService.getLastSnapshotCount() + " 个档案"
+        });
+    }
+
+    @Nonnull
+    private static String formatMillis(long nanos) {
+        return String.format("%.2f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Nonnull
+    @Override
+    public List<String> onTab(CommandSender sender, String[] args) {
+        return Collections.emptyList();
+    }
+
+}
@@ -288,6 +288,8 @@ public class BeeBuilder {
 
         species.setPrincessItemStack(princessStack);
         species.setDroneItemStack(droneStack);
+        species.setUnknownPrincessItemStack(loreService.makeUnknown(princessStack));
+        species.setUnknownDroneItemStack(loreService.makeUnknown(droneStack));
     }
 
     private void registerNest(SlimyBeesPlugin plugin, AlleleSpecies species) {
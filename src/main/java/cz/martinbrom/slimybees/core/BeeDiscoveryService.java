@@ -1,12 +1,15 @@
 package cz.martinbrom.slimybees.core;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
+import java.util.logging.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -17,12 +20,13 @@ import org.bukkit.ChatColor;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 
-import com.google.common.collect.ImmutableMap;
+import cz.martinbrom.slimybees.SlimyBeesPlugin;
 import cz.martinbrom.slimybees.core.genetics.Genome;
 import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
 import io.github.thebusybiscuit.slimefun4.utils.FireworkUtils;
 
@@ -34,42 +38,94 @@ public class BeeDiscoveryService {
 
     private final AlleleRegistry alleleRegistry;
 
-    private final Config discoveryConfig;
+    private final PlayerDataStorage playerDataStorage;
     private final Map<String, String> discoveredSpecies = new ConcurrentHashMap<>();
 
+    // both updated incrementally, so showing them never needs all discoveries or all profiles
+    private final Leaderboard<String> globalLeaderboard = new Leaderboard<>();
+    private final Leaderboard<UUID> personalLeaderboard = new Leaderboard<>();
+
     private final boolean shouldBroadcastDiscoveries;
 
-    public BeeDiscoveryService(AlleleRegistry alleleRegistry, Config config) {
+    public BeeDiscoveryService(AlleleRegistry alleleRegistry, PlayerDataStorage playerDataStorage, Config config) {
         this.alleleRegistry = alleleRegistry;
-        discoveryConfig = new Config("data-storage/SlimyBees/discoveries.yml");
+        this.playerDataStorage = playerDataStorage;
 
         shouldBroadcastDiscoveries = config.getBoolean("discoveries.broadcast-first-discovery");
     }
 
     /**
-     * Loads the global discoveries from a file.
+     * Loads the global discoveries from the {@link PlayerDataStorage}.
      * This cannot be done in the constructor because at that point
      * no alleles are registered yet.
      */
     public void loadGlobalDiscoveries() {
-        List<String> speciesUids = alleleRegistry.getAllUidsByChromosomeType(ChromosomeType.SPECIES);
-        for (String uid : speciesUids) {
-            String discoveredBy = discoveryConfig.getString(uid);
+        Map<String, String> entries = playerDataStorage.loadGlobalDiscoveries();
+        for (String uid : alleleRegistry.getAllUidsByChromosomeType(ChromosomeType.SPECIES)) {
+            String discoveredBy = entries.get(uid);
             if (discoveredBy != null) {
                 discoveredSpecies.put(uid, discoveredBy);
+                globalLeaderboard.add(discoveredBy, 1);
             }
         }
+
+        playerDataStorage.compact();
     }
 
     /**
-     * Returns an immutable copy of the global discoveries.
+     * Loads the number of discoveries of every player for the personal progress {@link Leaderboard}.
+     * Might have to read saved profiles, so it should be called from a background thread.
+     * Counts updated in the meantime are kept.
+     */
+    public void loadPersonalProgress() {
+        try {
+            for (Map.Entry<UUID, Integer> entry : playerDataStorage.loadDiscoveryCounts().entrySet()) {
+                personalLeaderboard.setIfAbsent(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            SlimyBeesPlugin.logger().log(Level.SEVERE, "Could not load the personal discovery progress of players", e);
+        }
+    }
+
+    /**
+     * Returns an unmodifiable view of the global discoveries.
      * Each entry contains the species uid as the key and the player name as the value.
      *
-     * @return Immutable copy of global discoveries
+     * @return Unmodifiable view of global discoveries
      */
     @Nonnull
     public Map<String, String> getDiscoveryInfo() {
-        return ImmutableMap.copyOf(discoveredSpecies);
+        return Collections.unmodifiableMap(discoveredSpecies);
+    }
+
+    /**
+     * Returns the number of species discovered by anyone.
+     *
+     * @return The number of globally discovered species
+     */
+    public int getGlobalDiscoveryCount() {
+        return discoveredSpecies.size();
+    }
+
+    /**
+     * Returns the {@link Leaderboard} of players by the number of species they discovered first.
+     *
+     * @return The global discovery {@link Leaderboard} keyed by player names
+     */
+    @Nonnull
+    public Leaderboard<String> getGlobalLeaderboard() {
+        return globalLeaderboard;
+    }
+
+    /**
+     * Returns the {@link Leaderboard} of players by the number of species they discovered.
+     * Contains players who are not online as well, once {@link #loadPersonalProgress()} finishes.
+     *
+     * @return The personal progress {@link Leaderboard} keyed by player {@link UUID}s
+     */
+    @Nonnull
+    public Leaderboard<UUID> getPersonalLeaderboard() {
+        return personalLeaderboard;
     }
 
     /**
@@ -95,28 +151,92 @@ public class BeeDiscoveryService {
 
     private void discoverGlobal(Player p, AlleleSpecies species) {
         String uid = species.getUid();
-        if (!discoveredSpecies.containsKey(uid)) {
-            String playerName = p.getName();
-            discoveredSpecies.put(uid, playerName);
-            discoveryConfig.setValue(uid, playerName);
-
-            // we could do "isDirty" (like the SlimyBeesPlayerProfile), but the global discoveries
-            // are FAR rarer so saving each time is fine
-            discoveryConfig.save();
+        String playerName = p.getName();
+        if (discoveredSpecies.putIfAbsent(uid, playerName) == null) {
+            // saved in the background
+            playerDataStorage.addGlobalDiscovery(uid, playerName);
+            globalLeaderboard.add(playerName, 1);
 
             if (shouldBroadcastDiscoveries) {
-                for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-                    onlinePlayer.sendMessage("" + ChatColor.GOLD + ChatColor.BOLD + playerName
-                            + ChatColor.RESET + ChatColor.WHITE + "第一个发现了"
-                            + ChatColor.BOLD + getDisplayNameForBroadcast(species, onlinePlayer)
-                            + ChatColor.RESET + ChatColor.WHITE + "物种!");
-
-                    onlinePlayer.playSound(onlinePlayer.getLocation(), Sound.ENTITY_PLAYER_LEVELUP, 1F, 1F);
-                }
+                broadcastDiscovery(playerName, species);
+            }
+        }
+    }
+
+    /**
+     * Announces the first discovery of given {@link AlleleSpecies} to all online players.
+     * Secret species are only named for players who discovered them already,
+     * which is checked on cached profiles only, so broadcasting never loads any profile.
+     *
+     * @param playerName The name of the player who discovered the species
+     * @param species The discovered {@link AlleleSpecies}
+     */
+    private void broadcastDiscovery(String playerName, AlleleSpecies species) {
+        String visibleMessage = createBroadcastMessage(playerName, species.getDisplayName());
+        String hiddenMessage = species.isSecret()
+                ? createBroadcastMessage(playerName, "" + ChatColor.DARK_RED + ChatColor.MAGIC + "helloworld")
+                : visibleMessage;
+
+        for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
+            onlinePlayer.sendMessage(canSeeSpecies(onlinePlayer, species) ? visibleMessage : hiddenMessage);
+            onlinePlayer.playSound(onlinePlayer.getLocation(), Sound.ENTITY_PLAYER_LEVELUP, 1F, 1F);
+        }
+    }
+
+    @Nonnull
+    private String createBroadcastMessage(String playerName, String speciesName) {
+        return "" + ChatColor.GOLD + ChatColor.BOLD + playerName
+                + ChatColor.RESET + ChatColor.WHITE + "第一个发现了"
+                + ChatColor.BOLD + speciesName
+                + ChatColor.RESET + ChatColor.WHITE + "物种!";
+    }
+
+    private boolean canSeeSpecies(Player p, AlleleSpecies species) {
+        if (!species.isSecret()) {
+            return true;
+        }
+
+        // a profile which is not loaded yet is treated as not having discovered anything
+        SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.find(p.getUniqueId());
+        return profile != null && profile.hasDiscovered(species);
+    }
+
+    /**
+     * Records a global discovery made on another server sharing the {@link PlayerDataStorage}.
+     * Replaces a local discovery of the same species, which lost the race to the storage.
+     * Has to be called from the main thread.
+     *
+     * @param uid The uid of the discovered species
+     * @param playerName The name of the player who discovered it first
+     */
+    public void applyRemoteDiscovery(String uid, String playerName) {
+        Validate.notNull(uid, "发现的物种 uid 不能为空!");
+        Validate.notNull(playerName, "玩家名称不能为空!");
+
+        String previous = discoveredSpecies.put(uid, playerName);
+        if (!playerName.equals(previous)) {
+            if (previous != null) {
+                globalLeaderboard.add(previous, -1);
             }
+
+            globalLeaderboard.add(playerName, 1);
         }
     }
 
+    /**
+     * Updates the personal progress of a player whose profile was changed on another server.
+     *
+     * @param uuid The {@link UUID} of the player
+     * @param discoveredCount The number of species discovered by the player according to the storage
+     */
+    public void applyRemoteProgress(UUID uuid, int discoveredCount) {
+        Validate.notNull(uuid, "玩家 UUID 不能为空!");
+
+        // a loaded profile might contain changes which are not saved yet
+        SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.find(uuid);
+        personalLeaderboard.set(uuid, profile == null ? discoveredCount : profile.getDiscoveredCount());
+    }
+
     /**
      * Marks the given {@link AlleleSpecies} as discovered.
      *
@@ -149,6 +269,7 @@ public class BeeDiscoveryService {
         SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.get(p);
         if (profile.hasDiscovered(species) != discover) {
             profile.discoverBee(species, discover);
+            updatePersonalProgress(profile);
             notifyPlayer(p, species.getDisplayName(), discover);
             return true;
         }
@@ -164,7 +285,7 @@ public class BeeDiscoveryService {
      * @return The number of previously undiscovered bee species
      */
     public long discoverAll(Player p) {
-        return discoverAllInner(p, alleleRegistry.getAllSpecies().stream());
+        return discoverAllInner(p, alleleRegistry.getRegisteredIds(ChromosomeType.SPECIES));
     }
 
     /**
@@ -177,26 +298,35 @@ public class BeeDiscoveryService {
      */
     public long discoverAllByOwner(Player p, UUID owner) {
         SlimyBeesPlayerProfile ownerProfile = SlimyBeesPlayerProfile.get(owner);
-        Stream<AlleleSpecies> ownerDiscoveredSpecies = ownerProfile.getDiscoveredBees().stream()
-                .map(uid -> (AlleleSpecies) alleleRegistry.get(ChromosomeType.SPECIES, uid))
-                .filter(Objects::nonNull);
+        BitSet ownerDiscoveredIds = ownerProfile.getDiscoveredIds();
+        ownerDiscoveredIds.and(alleleRegistry.getRegisteredIds(ChromosomeType.SPECIES));
 
-        return discoverAllInner(p, ownerDiscoveredSpecies);
+        return discoverAllInner(p, ownerDiscoveredIds);
     }
 
-    private long discoverAllInner(Player p, Stream<AlleleSpecies> speciesStream) {
+    private long discoverAllInner(Player p, BitSet speciesIds) {
         SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.get(p);
 
-        //noinspection SimplifyStreamApiCallChains
-        return speciesStream
-                .filter(species -> !profile.hasDiscovered(species))
-                .sorted(Comparator.comparing(Allele::getName))
-                .map(species -> {
-                    profile.discoverBee(species, true);
-                    notifyPlayer(p, species.getDisplayName(), true);
-                    return species;
-                })
-                .count();
+        BitSet newIds = (BitSet) speciesIds.clone();
+        newIds.andNot(profile.getDiscoveredIds());
+        if (newIds.isEmpty()) {
+            return 0;
+        }
+
+        profile.discoverAll(newIds);
+        updatePersonalProgress(profile);
+
+        List<AlleleSpecies> newSpecies = new ArrayList<>(newIds.cardinality());
+        for (int id = newIds.nextSetBit(0); id >= 0; id = newIds.nextSetBit(id + 1)) {
+            newSpecies.add((AlleleSpecies) alleleRegistry.getById(ChromosomeType.SPECIES, id));
+        }
+
+        newSpecies.sort(Comparator.comparing(Allele::getName));
+        for (AlleleSpecies species : newSpecies) {
+            notifyPlayer(p, species.getDisplayName(), true);
+        }
+
+        return newSpecies.size();
     }
 
     /**
@@ -206,10 +336,12 @@ public class BeeDiscoveryService {
      */
     public void undiscoverAll(Player p) {
         SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.get(p);
+        profile.undiscoverAll();
+        updatePersonalProgress(profile);
+    }
 
-        profile.getDiscoveredBees().stream()
-            .sorted()
-            .forEach(uid -> profile.discoverBee(uid, false));
+    private void updatePersonalProgress(SlimyBeesPlayerProfile profile) {
+        personalLeaderboard.set(profile.getUuid(), profile.getDiscoveredCount());
     }
 
     private void notifyPlayer(Player p, String name, boolean discover) {
@@ -221,16 +353,4 @@ public class BeeDiscoveryService {
         }
     }
 
-    @Nonnull
-    private String getDisplayNameForBroadcast(AlleleSpecies species, Player onlinePlayer) {
-        if (species.isSecret()) {
-            SlimyBeesPlayerProfile sbProfile = SlimyBeesPlayerProfile.get(onlinePlayer);
-            if (!sbProfile.hasDiscovered(species)) {
-                return "" + ChatColor.DARK_RED + ChatColor.MAGIC + "helloworld";
-            }
-        }
-
-        return species.getDisplayName();
-    }
-
 }
@@ -169,11 +169,11 @@ public class BeeLoreService {
         List<String> lore = new ArrayList<>();
         lore.add("");   // intentional empty first line
 
-        Chromosome[] chromosomes = genome.getChromosomes();
         for (ChromosomeType type : ChromosomeType.values()) {
+            Chromosome chromosome = genome.getChromosome(type);
             lore.add(ChatColor.WHITE + type.getDisplayName() + ": "
-                    + ChatColor.GRAY + chromosomes[type.ordinal()].getPrimaryAllele().getDisplayName() + " / "
-                    + chromosomes[type.ordinal()].getSecondaryAllele().getDisplayName());
+                    + ChatColor.GRAY + chromosome.getPrimaryAllele().getDisplayName() + " / "
+                    + chromosome.getSecondaryAllele().getDisplayName());
         }
 
         return lore;
@@ -0,0 +1,149 @@
+package cz.martinbrom.slimybees.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+
+/**
+ * This class is a read-only lookup table of all {@link BeeMutationDTO}s,
+ * indexed by the ids of both parent {@link AlleleSpecies}.
+ * <p>
+ * Each pair of parents holds its mutations together with cumulative probabilities,
+ * so a mutation can be chosen with a single random number.
+ * The probabilities are the same as when trying each mutation in a random order
+ * and taking the first successful one.
+ */
+@ParametersAreNonnullByDefault
+public class BeeMutationTable {
+
+    private final int size;
+    private final BeeMutationDTO[][] mutations;
+    private final double[][] cumulativeChances;
+
+    BeeMutationTable(AlleleRegistry alleleRegistry, Collection<List<BeeMutationDTO>> mutationLists) {
+        Validate.notNull(alleleRegistry, "AlleleRegistry 不能为空!");
+
+        size = alleleRegistry.getIdCount(ChromosomeType.SPECIES);
+        mutations = new BeeMutationDTO[size * size][];
+        cumulativeChances = new double[size * size][];
+
+        // group mutations by the parent ids
+        Map<Integer, List<BeeMutationDTO>> mutationsByIndex = new HashMap<>();
+        for (List<BeeMutationDTO> list : mutationLists) {
+            for (BeeMutationDTO mutation : list) {
+                Allele firstParent = alleleRegistry.get(ChromosomeType.SPECIES, mutation.getFirstParent());
+                Allele secondParent = alleleRegistry.get(ChromosomeType.SPECIES, mutation.getSecondParent());
+                if (firstParent != null && secondParent != null) {
+                    int index = firstParent.getId() * size + secondParent.getId();
+                    mutationsByIndex.computeIfAbsent(index, k -> new ArrayList<>()).add(mutation);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, List<BeeMutationDTO>> entry : mutationsByIndex.entrySet()) {
+            int index = entry.getKey();
+            BeeMutationDTO[] pairMutations = entry.getValue().toArray(new BeeMutationDTO[0]);
+            double[] chances = getCumulativeChances(pairMutations);
+
+            // store the pair both ways so we don't need to compare the parents during lookup
+            int mirroredIndex = (index % size) * size + index / size;
+            mutations[index] = mutations[mirroredIndex] = pairMutations;
+            cumulativeChances[index] = cumulativeChances[mirroredIndex] = chances;
+        }
+    }
+
+    /**
+     * Chooses a mutation for given parent {@link AlleleSpecies}.
+     *
+     * @param firstParent The {@link AlleleSpecies} of one parent
+     * @param secondParent The {@link AlleleSpecies} of another parent
+     * @param roll Uniformly distributed random number between 0 (inclusive) and 1 (exclusive)
+     * @return The chosen {@link BeeMutationDTO} or null if no mutation should happen
+     */
+    @Nullable
+    public BeeMutationDTO chooseMutation(AlleleSpecies firstParent, AlleleSpecies secondParent, double roll) {
+        int firstId = firstParent.getId();
+        int secondId = secondParent.getId();
+        if (firstId < 0 || secondId < 0 || firstId >= size || secondId >= size) {
+            return null;
+        }
+
+        int index = firstId * size + secondId;
+        double[] chances = cumulativeChances[index];
+        if (chances == null) {
+            return null;
+        }
+
+        for (int i = 0; i < chances.length; i++) {
+            if (roll < chances[i]) {
+                return mutations[index][i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns whether there is any mutation for given parent {@link AlleleSpecies}.
+     *
+     * @param firstParent The {@link AlleleSpecies} of one parent
+     * @param secondParent The {@link AlleleSpecies} of another parent
+     * @return True if the parents can mutate, false otherwise
+     */
+    public boolean hasMutations(AlleleSpecies firstParent, AlleleSpecies secondParent) {
+        int firstId = firstParent.getId();
+        int secondId = secondParent.getId();
+        return firstId >= 0 && secondId >= 0 && firstId < size && secondId < size
+                && mutations[firstId * size + secondId] != null;
+    }
+
+    /**
+     * Computes the probability that each mutation will be the one applied,
+     * when all of them are tried in a random order until one succeeds.
+     * That is the same as choosing uniformly from all the mutations that would succeed.
+     */
+    private static double[] getCumulativeChances(BeeMutationDTO[] pairMutations) {
+        int count = pairMutations.length;
+        double[] cumulative = new double[count];
+        double sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            // distribution of the number of successful mutations other than this one
+            double[] others = new double[count];
+            others[0] = 1;
+            for (int j = 0; j < count; j++) {
+                if (j != i) {
+                    double chance = pairMutations[j].getChance();
+                    for (int k = count - 1; k > 0; k--) {
+                        others[k] = others[k] * (1 - chance) + others[k - 1] * chance;
+                    }
+                    others[0] *= 1 - chance;
+                }
+            }
+
+            // this mutation wins if it succeeds and comes first among the successful ones
+            double winChance = 0;
+            for (int k = 0; k < count; k++) {
+                winChance += others[k] / (k + 1);
+            }
+
+            sum += pairMutations[i].getChance() * winChance;
+            cumulative[i] = sum;
+        }
+
+        return cumulative;
+    }
+
+}
@@ -1,6 +1,7 @@
 package cz.martinbrom.slimybees.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.annotation.Nonnull;
@@ -11,7 +12,9 @@ import org.bukkit.inventory.ItemStack;
 
 import cz.martinbrom.slimybees.core.genetics.BreedingModifierDTO;
 import cz.martinbrom.slimybees.core.genetics.Genome;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
 import cz.martinbrom.slimybees.core.recipe.ChanceItemStack;
+import cz.martinbrom.slimybees.utils.ItemStackUtils;
 
 @ParametersAreNonnullByDefault
 public class BeeProductionService {
@@ -29,6 +32,8 @@ public class BeeProductionService {
      * by the princess represented by the given {@link Genome}.
      * The amount of items produced is influenced by the princess' productivity allele value
      * and the {@link BreedingModifierDTO}.
+     * Productivity over 100 % gives extra items, see {@link ChanceItemStack#getCount(double, int)}.
+     * Identical items are merged into as few {@link ItemStack}s as their max stack size allows.
      *
      * @param princessGenome The princess' {@link Genome}
      * @param modifier Modifiers applied to the breeding process by the housing and/or frames
@@ -36,25 +41,59 @@ public class BeeProductionService {
      */
     @Nonnull
     public List<ItemStack> produce(Genome princessGenome, BreedingModifierDTO modifier) {
-        List<ItemStack> result = new ArrayList<>();
+        return createProducts(princessGenome.getSpecies(), produceAmounts(princessGenome, modifier));
+    }
+
+    /**
+     * Returns the amounts of each product of the princess' species (in the same order),
+     * produced over the working duration by the princess represented by the given {@link Genome}.
+     * See {@link #produce(Genome, BreedingModifierDTO)}.
+     *
+     * @param princessGenome The princess' {@link Genome}
+     * @param modifier Modifiers applied to the breeding process by the housing and/or frames
+     * @return Amounts of all products
+     */
+    @Nonnull
+    public int[] produceAmounts(Genome princessGenome, BreedingModifierDTO modifier) {
+        List<ChanceItemStack> products = princessGenome.getSpecies().getProducts();
+        if (products == null || products.isEmpty()) {
+            return new int[0];
+        }
 
         double productivityValue = princessGenome.getProductivityValue() * modifier.getProductionModifier();
+        int productionCycleCount = lifespanService.getProductionCycleCount(princessGenome, modifier);
 
-        List<ChanceItemStack> products = princessGenome.getSpecies().getProducts();
-        if (products != null) {
-            int productionCycleCount = lifespanService.getProductionCycleCount(princessGenome, modifier);
-            for (int i = 0; i < productionCycleCount; i++) {
-                for (ChanceItemStack product : products) {
-                    if (product.shouldGet(productivityValue)) {
-                        result.add(product.getItem());
-                    }
-                }
-            }
+        // only count the items (all cycles at once), stacks are created once at the end
+        int[] amounts = new int[products.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            ChanceItemStack product = products.get(i);
+            amounts[i] = product.getCount(productivityValue, productionCycleCount) * product.getItem().getAmount();
         }
 
-        // TODO: 06.07.21 Merge identical ItemStacks (or not create duplicates) to improve performance down the line
+        return amounts;
+    }
+
+    /**
+     * Creates {@link ItemStack}s of the products of given {@link AlleleSpecies}.
+     * Amounts of products the species no longer has are ignored.
+     *
+     * @param species The producing {@link AlleleSpecies}
+     * @param amounts Amounts of all products, see {@link #produceAmounts(Genome, BreedingModifierDTO)}
+     * @return All items produced
+     */
+    @Nonnull
+    public List<ItemStack> createProducts(AlleleSpecies species, int[] amounts) {
+        List<ChanceItemStack> products = species.getProducts();
+        if (products == null || products.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<ItemStack> items = new ArrayList<>(products.size());
+        for (ChanceItemStack product : products) {
+            items.add(product.getItem());
+        }
 
-        return result;
+        return ItemStackUtils.createStacks(items, Arrays.copyOf(amounts, products.size()));
     }
 
 }
@@ -18,6 +18,7 @@ import org.apache.commons.lang.Validate;
 
 import cz.martinbrom.slimybees.core.genetics.Chromosome;
 import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
@@ -35,6 +36,7 @@ public class BeeRegistry {
     private final boolean shouldDisplayBasicBees;
 
     private Allele[] defaultTemplate;
+    private BeeMutationTable mutationTable;
 
     public BeeRegistry(Config config) {
         shouldDisplayBasicBees = config.getBoolean("discoveries.display-basic-bees");
@@ -49,6 +51,10 @@ public class BeeRegistry {
     public void registerMutation(BeeMutationDTO mutation) {
         Validate.notNull(mutation, "无法注册无效突变!");
 
+        if (mutationTable != null) {
+            throw new IllegalStateException("突变表构建完成后无法再注册突变!");
+        }
+
         String child = mutation.getChild();
 
         childLookup.computeIfAbsent(child, k -> new ArrayList<>()).add(mutation);
@@ -105,6 +111,37 @@ public class BeeRegistry {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Builds the read-only {@link BeeMutationTable} from all registered mutations.
+     * Has to be called once all bee species and mutations are registered,
+     * no more mutations can be registered afterwards.
+     *
+     * @param alleleRegistry The {@link AlleleRegistry} holding all bee species
+     */
+    public void buildMutationTable(AlleleRegistry alleleRegistry) {
+        Validate.notNull(alleleRegistry, "AlleleRegistry 不能为空!");
+
+        if (mutationTable != null) {
+            throw new IllegalStateException("突变表只能构建一次!");
+        }
+
+        mutationTable = new BeeMutationTable(alleleRegistry, parentLookup.values());
+    }
+
+    /**
+     * Returns the {@link BeeMutationTable} containing all registered mutations.
+     *
+     * @return The {@link BeeMutationTable}
+     */
+    @Nonnull
+    public BeeMutationTable getMutationTable() {
+        if (mutationTable == null) {
+            throw new IllegalStateException("突变表尚未构建!");
+        }
+
+        return mutationTable;
+    }
+
     /**
      * Returns the partial template for given bee species uid.
      * Contains an {@link Allele} for each {@link ChromosomeType} which should
@@ -1,24 +1,46 @@
 package cz.martinbrom.slimybees.core;
 
+import java.util.BitSet;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.apache.commons.lang.Validate;
+import org.bukkit.Chunk;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 
-import io.github.thebusybiscuit.slimefun4.libraries.dough.blocks.BlockPosition;
-
+/**
+ * This service answers whether there is a {@link Block} of some {@link Material} near another {@link Block}.
+ * <p>
+ * Instead of looking at every {@link Block} in range, it keeps an index of the positions of all searched
+ * {@link Material}s for each chunk section (16x16x16 blocks). A section is scanned the first time it is needed
+ * and then kept up to date by block events (see {@link cz.martinbrom.slimybees.listeners.PlantIndexListener}),
+ * until its chunk is unloaded.
+ * <p>
+ * Some changes don't fire any event (e.g. crops popping off or edits made by other plugins), so every found
+ * position is checked against the actual {@link Block} and sections are scanned again after a while.
+ */
 @ParametersAreNonnullByDefault
 public class BlockSearchService {
 
-    private final Map<BlockPosition, BlockPosition> plantPositions = new ConcurrentHashMap<>();
+    private static final long SECTION_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Set<Material> trackedMaterials = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Map<Long, PlantSection>> sections = new ConcurrentHashMap<>();
 
     /**
      * Checks whether an area specified by given center {@link Block} and range on each side
      * contains a {@link Block} which has the same type as the given {@link Material}.
+     * Only loaded chunks are searched.
      *
      * @param center The center {@link Block} of the searched area
      * @param range Distance in blocks to check on each side of the center {@link Block}
@@ -29,21 +51,21 @@ public class BlockSearchService {
         Validate.notNull(center, "无法搜索方块，因为中心方块为空!");
         Validate.notNull(material, "无法搜索方块，因为搜索到的材料为空!");
 
-        BlockPosition centerPos = new BlockPosition(center);
-        BlockPosition cachedPos = plantPositions.get(centerPos);
+        trackedMaterials.add(material);
 
-        // if we already have a cached position, we simply check the block again
-        // to make sure it hasn't changed since the last time we checked
-        if (cachedPos != null && cachedPos.getBlock().getType() == material) {
-            return true;
-        }
+        World world = center.getWorld();
+        int y = center.getY();
+        int minX = center.getX() - range;
+        int maxX = center.getX() + range;
+        int minZ = center.getZ() - range;
+        int maxZ = center.getZ() + range;
 
-        // otherwise look at every block in range
-        for (int x = -range; x <= range; x++) {
-            for (int z = -range; z <= range; z++) {
-                Block b = center.getRelative(x, 0, z);
-                if (b.getType() == material) {
-                    plantPositions.put(centerPos, new BlockPosition(b));
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                PlantSection section = getSection(world, chunkX, y >> 4, chunkZ, material);
+                if (section != null && section.contains(world, material,
+                        Math.max(minX, chunkX << 4), Math.min(maxX, (chunkX << 4) + 15), y,
+                        Math.max(minZ, chunkZ << 4), Math.min(maxZ, (chunkZ << 4) + 15))) {
                     return true;
                 }
             }
@@ -52,4 +74,170 @@ public class BlockSearchService {
         return false;
     }
 
+    /**
+     * Updates the index after the {@link Block} changed its type.
+     * Does nothing if the {@link Block}'s section has not been scanned yet.
+     *
+     * @param block The changed {@link Block}
+     * @param type The new {@link Material} of the {@link Block}
+     */
+    public void update(Block block, Material type) {
+        Validate.notNull(block, "无法为空方块更新索引!");
+        Validate.notNull(type, "无法使用空材料更新索引!");
+
+        Map<Long, PlantSection> worldSections = sections.get(block.getWorld().getUID());
+        if (worldSections != null) {
+            PlantSection section = worldSections.get(getSectionKey(block.getX() >> 4, block.getY() >> 4, block.getZ() >> 4));
+            if (section != null) {
+                section.update(getIndex(block.getX(), block.getY(), block.getZ()), type);
+            }
+        }
+    }
+
+    /**
+     * Removes the section of given {@link Block} from the index, it will be scanned again when needed.
+     * Used for changes that are too complicated to follow, like blocks moved by pistons.
+     *
+     * @param block The changed {@link Block}
+     */
+    public void invalidate(Block block) {
+        Validate.notNull(block, "无法使空方块的索引失效!");
+
+        Map<Long, PlantSection> worldSections = sections.get(block.getWorld().getUID());
+        if (worldSections != null) {
+            worldSections.remove(getSectionKey(block.getX() >> 4, block.getY() >> 4, block.getZ() >> 4));
+        }
+    }
+
+    /**
+     * Removes all sections of given {@link Chunk} from the index.
+     *
+     * @param chunk The unloaded {@link Chunk}
+     */
+    public void removeChunk(Chunk chunk) {
+        Validate.notNull(chunk, "无法从索引中移除空区块!");
+
+        World world = chunk.getWorld();
+        Map<Long, PlantSection> worldSections = sections.get(world.getUID());
+        if (worldSections != null) {
+            for (int sectionY = world.getMinHeight() >> 4; sectionY <= (world.getMaxHeight() - 1) >> 4; sectionY++) {
+                worldSections.remove(getSectionKey(chunk.getX(), sectionY, chunk.getZ()));
+            }
+        }
+    }
+
+    /**
+     * Removes all sections of given {@link World} from the index.
+     *
+     * @param world The unloaded {@link World}
+     */
+    public void removeWorld(World world) {
+        Validate.notNull(world, "无法从索引中移除空世界!");
+
+        sections.remove(world.getUID());
+    }
+
+    @Nullable
+    private PlantSection getSection(World world, int chunkX, int sectionY, int chunkZ, Material material) {
+        Map<Long, PlantSection> worldSections = sections.computeIfAbsent(world.getUID(), k -> new ConcurrentHashMap<>());
+        long key = getSectionKey(chunkX, sectionY, chunkZ);
+
+        PlantSection section = worldSections.get(key);
+        // sections scanned before the material was first searched for don't know about it
+        if (section == null || section.isOutdated() || !section.isTracked(material)) {
+            // never load chunks just to look for plants
+            if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                return null;
+            }
+
+            section = scanSection(world, world.getChunkAt(chunkX, chunkZ), sectionY);
+            worldSections.put(key, section);
+        }
+
+        return section;
+    }
+
+    @Nonnull
+    private PlantSection scanSection(World world, Chunk chunk, int sectionY) {
+        Map<Material, BitSet> positions = new EnumMap<>(Material.class);
+        for (Material material : trackedMaterials) {
+            positions.put(material, new BitSet(4096));
+        }
+
+        int minY = Math.max(world.getMinHeight(), sectionY << 4);
+        int maxY = Math.min(world.getMaxHeight() - 1, (sectionY << 4) + 15);
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BitSet bits = positions.get(chunk.getBlock(x, y, z).getType());
+                    if (bits != null) {
+                        bits.set(getIndex(x, y, z));
+                    }
+                }
+            }
+        }
+
+        return new PlantSection(positions);
+    }
+
+    private static long getSectionKey(int chunkX, int sectionY, int chunkZ) {
+        return ((long) chunkX & 0x3FFFFFF) << 38 | ((long) chunkZ & 0x3FFFFFF) << 12 | (sectionY & 0xFFF);
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    /**
+     * Positions of all tracked {@link Material}s in a single chunk section.
+     * Each {@link Material} has a {@link BitSet} indexed by the block position inside the section,
+     * so a row of blocks can be searched with a single {@link BitSet#nextSetBit(int)} call.
+     */
+    private static class PlantSection {
+
+        private final Map<Material, BitSet> positions;
+        private final long scannedAt = System.currentTimeMillis();
+
+        private PlantSection(Map<Material, BitSet> positions) {
+            this.positions = positions;
+        }
+
+        private boolean isOutdated() {
+            return System.currentTimeMillis() - scannedAt > SECTION_REFRESH_MILLIS;
+        }
+
+        private boolean isTracked(Material material) {
+            return positions.containsKey(material);
+        }
+
+        private synchronized boolean contains(World world, Material material, int minX, int maxX, int y, int minZ, int maxZ) {
+            BitSet bits = positions.get(material);
+            if (bits == null || bits.isEmpty()) {
+                return false;
+            }
+
+            for (int z = minZ; z <= maxZ; z++) {
+                int rowStart = getIndex(minX, y, z);
+                int rowEnd = rowStart + (maxX - minX);
+                for (int i = bits.nextSetBit(rowStart); i >= 0 && i <= rowEnd; i = bits.nextSetBit(i + 1)) {
+                    // the position might be outdated if the block changed without an event
+                    if (world.getBlockAt((minX & ~15) | (i & 15), y, z).getType() == material) {
+                        return true;
+                    }
+
+                    bits.clear(i);
+                }
+            }
+
+            return false;
+        }
+
+        private synchronized void update(int index, Material type) {
+            for (Map.Entry<Material, BitSet> entry : positions.entrySet()) {
+                entry.getValue().set(index, entry.getKey() == type);
+            }
+        }
+
+    }
+
 }
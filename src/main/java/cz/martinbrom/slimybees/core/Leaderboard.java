@@ -0,0 +1,160 @@
+package cz.martinbrom.slimybees.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Keeps scores of players sorted from the highest one, so a page of the leaderboard
+ * can be read without sorting or copying all the scores.
+ * Updating a score takes O(log n), reading a page of size N takes O(offset + N).
+ * Can be used from any thread.
+ *
+ * @param <K> The type of player identifiers
+ */
+@ParametersAreNonnullByDefault
+public class Leaderboard<K extends Comparable<? super K>> {
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    // ties are ordered by the key, so the order is stable
+    private final TreeSet<Entry<K>> sortedEntries = new TreeSet<>(Comparator.<Entry<K>>comparingInt(Entry::getScore)
+            .reversed()
+            .thenComparing(Entry::getKey));
+
+    /**
+     * Sets the score of given player. Players with a score of zero are removed.
+     *
+     * @param key The player identifier
+     * @param score The new score
+     */
+    public synchronized void set(K key, int score) {
+        Validate.notNull(key, "排行榜键不能为空!");
+
+        Entry<K> entry = entries.remove(key);
+        if (entry != null) {
+            sortedEntries.remove(entry);
+        }
+
+        if (score > 0) {
+            entry = new Entry<>(key, score);
+            entries.put(key, entry);
+            sortedEntries.add(entry);
+        }
+    }
+
+    /**
+     * Sets the score of given player, unless the player already has a score.
+     * Used when loading older scores, which must not overwrite newer ones.
+     *
+     * @param key The player identifier
+     * @param score The score
+     */
+    public synchronized void setIfAbsent(K key, int score) {
+        if (!entries.containsKey(key)) {
+            set(key, score);
+        }
+    }
+
+    /**
+     * Adds given amount to the score of given player.
+     *
+     * @param key The player identifier
+     * @param amount The amount to add, can be negative
+     */
+    public synchronized void add(K key, int amount) {
+        set(key, getScore(key) + amount);
+    }
+
+    public synchronized int getScore(K key) {
+        Entry<K> entry = entries.get(key);
+        return entry == null ? 0 : entry.getScore();
+    }
+
+    /**
+     * Returns the number of players with a non-zero score.
+     *
+     * @return The number of players
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of pages of given size.
+     *
+     * @param pageSize The number of players per page
+     * @return The number of pages, at least one
+     */
+    public synchronized int getPageCount(int pageSize) {
+        Validate.isTrue(pageSize > 0, "每页数量必须大于零!");
+
+        return Math.max(1, (entries.size() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Returns a single page of the leaderboard.
+     *
+     * @param page The page number, starting from zero
+     * @param pageSize The number of players per page
+     * @return The {@link Entry}s on the page, ordered from the highest score
+     */
+    @Nonnull
+    public synchronized List<Entry<K>> getPage(int page, int pageSize) {
+        Validate.isTrue(page >= 0, "页码不能为负数!");
+        Validate.isTrue(pageSize > 0, "每页数量必须大于零!");
+
+        long offset = (long) page * pageSize;
+        if (offset >= entries.size()) {
+            return Collections.emptyList();
+        }
+
+        Iterator<Entry<K>> iterator = sortedEntries.iterator();
+        for (long i = 0; i < offset; i++) {
+            iterator.next();
+        }
+
+        List<Entry<K>> result = new ArrayList<>(pageSize);
+        while (iterator.hasNext() && result.size() < pageSize) {
+            result.add(iterator.next());
+        }
+
+        return result;
+    }
+
+    /**
+     * A single score on the {@link Leaderboard}.
+     *
+     * @param <K> The type of player identifiers
+     */
+    public static final class Entry<K> {
+
+        private final K key;
+        private final int score;
+
+        private Entry(K key, int score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        @Nonnull
+        public K getKey() {
+            return key;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+    }
+
+}
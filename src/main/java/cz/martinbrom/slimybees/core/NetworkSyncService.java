@@ -0,0 +1,151 @@
+package cz.martinbrom.slimybees.core;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.plugin.Plugin;
+
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.ProfileDataDTO;
+import cz.martinbrom.slimybees.core.storage.StorageChangesDTO;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+/**
+ * This service keeps the cached player data of this server in sync with other servers
+ * using the same shared {@link PlayerDataStorage}.
+ * <p>
+ * Loaded {@link SlimyBeesPlayerProfile}s stay the only source of truth for reads, so checking a discovery
+ * never touches the storage. Periodically, dirty profiles are saved in batches and the changes made
+ * by other servers are polled in the background. Loaded profiles changed elsewhere are reloaded
+ * and global discoveries are merged, both on the main thread.
+ */
+@ParametersAreNonnullByDefault
+public class NetworkSyncService {
+
+    private final Plugin plugin;
+    private final SlimyBeesRegistry registry;
+    private final PlayerDataStorage storage;
+    private final ProfileSaveService profileSaveService;
+    private final BeeDiscoveryService discoveryService;
+    private final Logger logger;
+    private final long intervalTicks;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    public NetworkSyncService(Plugin plugin, SlimyBeesRegistry registry, PlayerDataStorage storage,
+                              ProfileSaveService profileSaveService, BeeDiscoveryService discoveryService, Config config) {
+        Validate.notNull(plugin, "插件不能为空!");
+        Validate.notNull(registry, "注册表不能为空!");
+        Validate.notNull(storage, "存储不能为空!");
+        Validate.notNull(profileSaveService, "档案保存服务不能为空!");
+        Validate.notNull(discoveryService, "发现服务不能为空!");
+        Validate.notNull(config, "配置不能为空!");
+
+        this.plugin = plugin;
+        this.registry = registry;
+        this.storage = storage;
+        this.profileSaveService = profileSaveService;
+        this.discoveryService = discoveryService;
+        this.logger = plugin.getLogger();
+        this.intervalTicks = Math.max(1, config.getInt("options.network-sync-interval"));
+    }
+
+    /**
+     * Starts synchronizing, if the {@link PlayerDataStorage} is shared.
+     */
+    public void start() {
+        if (storage.isShared()) {
+            plugin.getServer().getScheduler().runTaskTimer(plugin, this::sync, intervalTicks, intervalTicks);
+        }
+    }
+
+    private void sync() {
+        // other servers only see what has been written
+        profileSaveService.saveAll();
+
+        // a slow poll is not started again until it finishes
+        if (polling.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::poll);
+        }
+    }
+
+    private void poll() {
+        try {
+            StorageChangesDTO changes = storage.pollChanges();
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            // only profiles cached here need to be reloaded, the rest is read when it is needed
+            Map<UUID, ReloadedProfile> reloadedProfiles = new HashMap<>();
+            for (UUID uuid : changes.getChangedProfiles().keySet()) {
+                SlimyBeesPlayerProfile profile = registry.getPlayerProfiles().get(uuid);
+                if (profile != null) {
+                    // remembered before loading, so local changes saved in the meantime are not overwritten,
+                    // a snapshot which is still being written might be missing in the data as well
+                    long version = profile.getSnapshotVersion();
+                    if (!profile.isSaved()) {
+                        version = -1;
+                    }
+
+                    reloadedProfiles.put(uuid, new ReloadedProfile(profile, version, storage.loadProfile(uuid)));
+                }
+            }
+
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, () -> apply(changes, reloadedProfiles));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not load player data changes made by other servers", e);
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    private void apply(StorageChangesDTO changes, Map<UUID, ReloadedProfile> reloadedProfiles) {
+        for (Map.Entry<String, String> entry : changes.getGlobalDiscoveries().entrySet()) {
+            discoveryService.applyRemoteDiscovery(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<UUID, ReloadedProfile> entry : reloadedProfiles.entrySet()) {
+            SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.find(entry.getKey());
+            if (profile != null) {
+                ReloadedProfile reloaded = entry.getValue();
+                // a profile loaded again in the meantime has its own versions, so the data is always merged into it
+                long version = profile == reloaded.profile ? reloaded.version : -1;
+                profile.applyRemoteData(reloaded.data, version);
+            }
+        }
+
+        for (Map.Entry<UUID, Integer> entry : changes.getChangedProfiles().entrySet()) {
+            discoveryService.applyRemoteProgress(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Data of a cached profile loaded from the storage together with the snapshot version
+     * of the profile at the time the loading started.
+     */
+    private static final class ReloadedProfile {
+
+        private final SlimyBeesPlayerProfile profile;
+        private final long version;
+        private final ProfileDataDTO data;
+
+        private ReloadedProfile(SlimyBeesPlayerProfile profile, long version, ProfileDataDTO data) {
+            this.profile = profile;
+            this.version = version;
+            this.data = data;
+        }
+
+    }
+
+}
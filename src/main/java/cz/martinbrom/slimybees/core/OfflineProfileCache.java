@@ -0,0 +1,92 @@
+package cz.martinbrom.slimybees.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+/**
+ * Keeps track of loaded {@link SlimyBeesPlayerProfile}s of players who are not online,
+ * e.g. owners of a shared Tome of Discovery or players who left the server.
+ * <p>
+ * Only a limited number of such profiles is kept, the least recently used ones
+ * are handed to the eviction handler, which is responsible for saving and unloading them.
+ * Can be used from any thread.
+ */
+@ParametersAreNonnullByDefault
+public class OfflineProfileCache {
+
+    private final int maxSize;
+    private final Consumer<SlimyBeesPlayerProfile> evictionHandler;
+
+    // access order, so the eldest entry is the least recently used one
+    private final Map<UUID, SlimyBeesPlayerProfile> profiles = new LinkedHashMap<>(16, 0.75F, true);
+
+    public OfflineProfileCache(Config config, Consumer<SlimyBeesPlayerProfile> evictionHandler) {
+        Validate.notNull(config, "配置不能为空!");
+        Validate.notNull(evictionHandler, "移除处理器不能为空!");
+
+        this.maxSize = Math.max(0, config.getInt("options.offline-profile-cache-size"));
+        this.evictionHandler = evictionHandler;
+    }
+
+    /**
+     * Adds given {@link SlimyBeesPlayerProfile} to the cache or marks it as recently used,
+     * possibly evicting the least recently used profiles.
+     *
+     * @param profile The {@link SlimyBeesPlayerProfile} of a player who is not online
+     */
+    public void add(SlimyBeesPlayerProfile profile) {
+        Validate.notNull(profile, "无法缓存空档案!");
+
+        List<SlimyBeesPlayerProfile> evicted = new ArrayList<>(1);
+        synchronized (this) {
+            profiles.put(profile.getUuid(), profile);
+
+            Iterator<SlimyBeesPlayerProfile> iterator = profiles.values().iterator();
+            while (profiles.size() > maxSize && iterator.hasNext()) {
+                evicted.add(iterator.next());
+                iterator.remove();
+            }
+        }
+
+        // the handler might need some time, don't block other threads meanwhile
+        for (SlimyBeesPlayerProfile evictedProfile : evicted) {
+            evictionHandler.accept(evictedProfile);
+        }
+    }
+
+    /**
+     * Marks the profile of the player with given {@link UUID} as recently used,
+     * if it is in the cache.
+     *
+     * @param uuid The {@link UUID} of the player
+     */
+    public synchronized void touch(UUID uuid) {
+        profiles.get(uuid);
+    }
+
+    /**
+     * Removes the profile of the player with given {@link UUID} from the cache,
+     * because the player is online now.
+     *
+     * @param uuid The {@link UUID} of the player
+     */
+    public synchronized void remove(UUID uuid) {
+        profiles.remove(uuid);
+    }
+
+    public synchronized int size() {
+        return profiles.size();
+    }
+
+}
@@ -0,0 +1,295 @@
+package cz.martinbrom.slimybees.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+/**
+ * This service saves {@link SlimyBeesPlayerProfile}s without blocking the main thread.
+ * <p>
+ * Dirty profiles are copied into {@link SlimyBeesPlayerProfile.Snapshot}s on the main thread
+ * and the snapshots are written to the {@link PlayerDataStorage} in batches by a small pool of I/O threads.
+ * A storage which cannot handle concurrent writes gets a single thread.
+ * Unloaded profiles are kept here until their last snapshot is written,
+ * so a player who reconnects in the meantime gets the same profile back instead of reading an old file.
+ */
+@ParametersAreNonnullByDefault
+public class ProfileSaveService {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final SlimyBeesRegistry registry;
+    private final PlayerDataStorage storage;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final long shutdownTimeoutMillis;
+
+    private final Map<UUID, SlimyBeesPlayerProfile> unloadingProfiles = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingSaves = new AtomicInteger();
+    private final AtomicLong savedProfiles = new AtomicLong();
+    private final AtomicLong failedSaves = new AtomicLong();
+    private final AtomicLong totalSaveNanos = new AtomicLong();
+    private final AtomicLong maxSaveNanos = new AtomicLong();
+    private volatile long lastSnapshotNanos = 0;
+    private volatile int lastSnapshotCount = 0;
+
+    public ProfileSaveService(SlimyBeesRegistry registry, PlayerDataStorage storage, Logger logger, Config config) {
+        Validate.notNull(registry, "注册表不能为空!");
+        Validate.notNull(storage, "存储不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+        Validate.notNull(config, "配置不能为空!");
+
+        this.registry = registry;
+        this.storage = storage;
+        this.logger = logger;
+
+        int threads = storage.supportsConcurrentWrites() ? Math.max(1, config.getInt("options.profile-save-threads")) : 1;
+        shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.getInt("options.profile-save-shutdown-timeout")));
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("SlimyBees Profile Saver #%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Saves all dirty {@link SlimyBeesPlayerProfile}s and unloads profiles marked for deletion.
+     * Has to be called from the main thread, the profiles are written asynchronously.
+     */
+    public void saveAll() {
+        long start = System.nanoTime();
+        List<SlimyBeesPlayerProfile.Snapshot> snapshots = new ArrayList<>();
+
+        for (SlimyBeesPlayerProfile profile : registry.getPlayerProfiles().values()) {
+            if (profile.isMarkedForDeletion() && !detach(profile)) {
+                continue;
+            }
+
+            if (profile.isDirty()) {
+                snapshots.add(profile.createSnapshot());
+            }
+        }
+
+        // profiles whose last save failed
+        for (SlimyBeesPlayerProfile profile : unloadingProfiles.values()) {
+            if (profile.isDirty()) {
+                snapshots.add(profile.createSnapshot());
+            }
+        }
+
+        for (int i = 0; i < snapshots.size(); i += BATCH_SIZE) {
+            submit(new ArrayList<>(snapshots.subList(i, Math.min(i + BATCH_SIZE, snapshots.size()))));
+        }
+
+        lastSnapshotNanos = System.nanoTime() - start;
+        lastSnapshotCount = snapshots.size();
+    }
+
+    /**
+     * Saves given {@link SlimyBeesPlayerProfile} asynchronously.
+     * Has to be called from the main thread.
+     *
+     * @param profile The {@link SlimyBeesPlayerProfile} to save
+     */
+    public void save(SlimyBeesPlayerProfile profile) {
+        Validate.notNull(profile, "无法保存空档案!");
+
+        submit(Collections.singletonList(profile.createSnapshot()));
+    }
+
+    /**
+     * Removes given {@link SlimyBeesPlayerProfile} from the {@link SlimyBeesRegistry} and saves it if needed.
+     * Does nothing if the profile is no longer marked for deletion, e.g. because the player joined again.
+     * Has to be called from the main thread.
+     *
+     * @param profile The {@link SlimyBeesPlayerProfile} to unload
+     */
+    public void unload(SlimyBeesPlayerProfile profile) {
+        Validate.notNull(profile, "无法卸载空档案!");
+
+        if (profile.isMarkedForDeletion() && detach(profile) && profile.isDirty()) {
+            save(profile);
+        }
+    }
+
+    /**
+     * Removes given {@link SlimyBeesPlayerProfile} from the {@link SlimyBeesRegistry},
+     * keeping it reachable through {@link #reclaim(UUID)} until it is saved.
+     *
+     * @param profile The {@link SlimyBeesPlayerProfile} to remove
+     * @return True if the profile has been removed, false if it is not in the registry
+     */
+    private boolean detach(SlimyBeesPlayerProfile profile) {
+        // has to be reachable through reclaim() before it disappears from the registry
+        UUID uuid = profile.getUuid();
+        unloadingProfiles.put(uuid, profile);
+        if (!registry.getPlayerProfiles().remove(uuid, profile)) {
+            unloadingProfiles.remove(uuid, profile);
+            return false;
+        }
+
+        if (!profile.isDirty() && profile.isSaved()) {
+            unloadingProfiles.remove(uuid, profile);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns an unloaded {@link SlimyBeesPlayerProfile} which is still waiting to be saved.
+     * The caller becomes responsible for putting the profile back into the {@link SlimyBeesRegistry}.
+     *
+     * @param uuid The {@link UUID} of the profile's player
+     * @return The {@link SlimyBeesPlayerProfile} or null if there is none
+     */
+    @Nullable
+    public SlimyBeesPlayerProfile reclaim(UUID uuid) {
+        Validate.notNull(uuid, "无法为空 UUID 取回档案!");
+
+        SlimyBeesPlayerProfile profile = unloadingProfiles.remove(uuid);
+        if (profile != null) {
+            profile.unmarkForDeletion();
+        }
+
+        return profile;
+    }
+
+    /**
+     * Returns whether an unloaded {@link SlimyBeesPlayerProfile} of given player is still waiting to be saved.
+     *
+     * @param uuid The {@link UUID} of the profile's player
+     * @return True if the profile is being saved after it has been unloaded, false otherwise
+     */
+    public boolean hasPendingSave(UUID uuid) {
+        Validate.notNull(uuid, "无法为空 UUID 检查档案!");
+
+        return unloadingProfiles.containsKey(uuid);
+    }
+
+    /**
+     * Saves every dirty {@link SlimyBeesPlayerProfile} and waits for all writes to finish,
+     * but at most for the configured timeout.
+     * Has to be called from the main thread, no profiles can be saved afterwards.
+     */
+    public void shutdown() {
+        saveAll();
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.log(Level.SEVERE, "Could not save {0} player profiles in time, their latest changes are lost!",
+                        pendingSaves.get());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(List<SlimyBeesPlayerProfile.Snapshot> snapshots) {
+        pendingSaves.addAndGet(snapshots.size());
+
+        try {
+            executor.execute(() -> write(snapshots));
+        } catch (RejectedExecutionException e) {
+            // the service is shutting down, don't lose the data
+            write(snapshots);
+        }
+    }
+
+    private void write(List<SlimyBeesPlayerProfile.Snapshot> snapshots) {
+        long start = System.nanoTime();
+
+        try {
+            storage.saveProfiles(snapshots);
+            savedProfiles.addAndGet(snapshots.size());
+        } catch (IOException e) {
+            failedSaves.addAndGet(snapshots.size());
+            // picked up by the next save, unloaded profiles are kept here until then
+            for (SlimyBeesPlayerProfile.Snapshot snapshot : snapshots) {
+                snapshot.getProfile().markDirty();
+            }
+
+            logger.log(Level.SEVERE, "Could not save " + snapshots.size() + " player profiles", e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            totalSaveNanos.addAndGet(duration);
+            maxSaveNanos.accumulateAndGet(duration, Math::max);
+
+            pendingSaves.addAndGet(-snapshots.size());
+            for (SlimyBeesPlayerProfile.Snapshot snapshot : snapshots) {
+                SlimyBeesPlayerProfile profile = snapshot.getProfile();
+                if (profile.isSaved()) {
+                    unloadingProfiles.remove(profile.getUuid(), profile);
+                }
+            }
+        }
+    }
+
+    public int getPendingSaves() {
+        return pendingSaves.get();
+    }
+
+    public long getSavedProfiles() {
+        return savedProfiles.get();
+    }
+
+    public long getFailedSaves() {
+        return failedSaves.get();
+    }
+
+    /**
+     * Returns the average time spent writing a single profile.
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getAverageSaveNanos() {
+        long count = savedProfiles.get() + failedSaves.get();
+        return count == 0 ? 0 : totalSaveNanos.get() / count;
+    }
+
+    /**
+     * Returns the longest time spent writing a single batch of profiles.
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getMaxSaveNanos() {
+        return maxSaveNanos.get();
+    }
+
+    /**
+     * Returns how long the main thread spent taking snapshots during the last {@link #saveAll()}.
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getLastSnapshotNanos() {
+        return lastSnapshotNanos;
+    }
+
+    public int getLastSnapshotCount() {
+        return lastSnapshotCount;
+    }
+
+}
@@ -1,10 +1,14 @@
 package cz.martinbrom.slimybees.core;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -16,41 +20,63 @@ import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
 import cz.martinbrom.slimybees.SlimyBeesPlugin;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import cz.martinbrom.slimybees.core.storage.PlayerDataStorage;
+import cz.martinbrom.slimybees.core.storage.ProfileDataDTO;
 import io.github.thebusybiscuit.slimefun4.api.player.PlayerProfile;
-import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
 
 /**
  * This class represents holds cached player data.
  * It is basically a copy of {@link PlayerProfile} from Slimefun 4,
  * but until that class is fully extendable for addons,
  * a separate implementation is the way for this addon.
+ * <p>
+ * Profiles are changed on the main thread only. They are saved by the {@link ProfileSaveService},
+ * which takes a {@link Snapshot} of the profile on the main thread and writes it
+ * to the configured {@link PlayerDataStorage} asynchronously.
+ * <p>
+ * Discovered species are stored in a {@link BitSet} indexed by the species id (see {@link AlleleRegistry#getAssignedId}),
+ * so checking a discovery is a single bit test and bulk operations work on whole words.
  */
 @ParametersAreNonnullByDefault
 public class SlimyBeesPlayerProfile {
 
-    public static final String BEE_SPECIES_KEY = "discovered_bee_species";
+    // makes sure that a profile is never loaded twice at the same time
+    private static final Striped<Lock> LOAD_LOCKS = Striped.lock(64);
 
+    private final AlleleRegistry alleleRegistry;
     private final UUID uuid;
-    private final Config beeConfig;
-    private final Set<String> discoveredBees;
-
-    private boolean dirty = false;
-    private boolean markedForDeletion = false;
-
-    private SlimyBeesPlayerProfile(UUID uuid) {
+    // false if the data could not be loaded, such profile is never saved
+    private final boolean loaded;
+    private final BitSet discoveredBees = new BitSet();
+    // species which never got an id, only kept to be saved again
+    private final Set<String> unknownBees = new HashSet<>();
+
+    // snapshots can be written by multiple threads at once
+    private final Object writeLock = new Object();
+    private volatile long snapshotVersion = 0;
+    private long savedVersion = 0;
+    // version of the stored data this profile contains, see ProfileDataDTO#getStorageVersion()
+    private long storageVersion;
+
+    private volatile boolean dirty = false;
+    private volatile boolean markedForDeletion = false;
+
+    private SlimyBeesPlayerProfile(UUID uuid, ProfileDataDTO data, boolean loaded) {
         Validate.notNull(uuid, "无法为空 UUID 创建配置文件!");
+        Validate.notNull(data, "档案数据不能为空!");
 
         this.uuid = uuid;
+        this.loaded = loaded;
 
-        beeConfig = new Config("data-storage/SlimyBees/Players/" + uuid + ".yml");
-
-        List<String> allSpecies = SlimyBeesPlugin.getAlleleRegistry().getAllUidsByChromosomeType(ChromosomeType.SPECIES);
-        discoveredBees = allSpecies.stream()
-                .filter(uid -> beeConfig.contains(BEE_SPECIES_KEY + "." + uid))
-                .collect(Collectors.toSet());
+        alleleRegistry = SlimyBeesPlugin.getAlleleRegistry();
+        storageVersion = data.getStorageVersion();
+        discoveredBees.or(data.getDiscoveredIds());
+        unknownBees.addAll(data.getUnknownBees());
     }
 
     /**
@@ -70,6 +96,7 @@ public class SlimyBeesPlayerProfile {
     /**
      * Returns a {@link SlimyBeesPlayerProfile} for a given {@link OfflinePlayer}'s {@link UUID}.
      * If the profile is not cached yet, loads it and puts it into the cache.
+     * Profiles of online players are usually loaded before they join, see {@link #preload(UUID)}.
      *
      * @param uuid The {@link OfflinePlayer}'s {@link UUID} to load the profile for
      * @return The {@link SlimyBeesPlayerProfile}
@@ -78,15 +105,93 @@ public class SlimyBeesPlayerProfile {
     public static SlimyBeesPlayerProfile get(UUID uuid) {
         Validate.notNull(uuid, "无法获取空 UUID 的配置文件!");
 
+        OfflineProfileCache offlineCache = SlimyBeesPlugin.getOfflineProfileCache();
         SlimyBeesPlayerProfile profile = find(uuid);
         if (profile == null) {
-            profile = new SlimyBeesPlayerProfile(uuid);
-            SlimyBeesPlugin.getRegistry().getPlayerProfiles().put(uuid, profile);
+            profile = load(uuid);
+
+            // online players are removed from the cache when they join
+            if (Bukkit.getPlayer(uuid) == null) {
+                offlineCache.add(profile);
+            }
+        } else if (profile.isMarkedForDeletion()) {
+            // evicted, but used again before it could be unloaded
+            profile.unmarkForDeletion();
+            offlineCache.add(profile);
+        } else {
+            offlineCache.touch(uuid);
         }
 
         return profile;
     }
 
+    /**
+     * Loads the {@link SlimyBeesPlayerProfile} of a player who is about to join.
+     * Called from the async pre-login event, so the main thread doesn't have to wait for the disk.
+     *
+     * @param uuid The {@link UUID} of the joining player
+     */
+    public static void preload(UUID uuid) {
+        Validate.notNull(uuid, "无法为空 UUID 预加载档案!");
+
+        SlimyBeesPlayerProfile profile = find(uuid);
+        if (profile == null) {
+            load(uuid);
+        } else {
+            profile.unmarkForDeletion();
+        }
+
+        SlimyBeesPlugin.getOfflineProfileCache().remove(uuid);
+    }
+
+    /**
+     * Returns the lock held while a {@link SlimyBeesPlayerProfile} of given player is being loaded.
+     * As long as it is held, a profile which is not loaded cannot be loaded and saved by anyone else.
+     *
+     * @param uuid The {@link UUID} of the profile's player
+     * @return The {@link Lock}
+     */
+    @Nonnull
+    public static Lock getLoadLock(UUID uuid) {
+        Validate.notNull(uuid, "无法为空 UUID 锁定档案!");
+
+        return LOAD_LOCKS.get(uuid);
+    }
+
+    @Nonnull
+    private static SlimyBeesPlayerProfile load(UUID uuid) {
+        Lock lock = LOAD_LOCKS.get(uuid);
+        lock.lock();
+        try {
+            SlimyBeesPlayerProfile profile = find(uuid);
+            if (profile == null) {
+                // the profile might still be in the middle of being saved after it has been unloaded
+                profile = SlimyBeesPlugin.getProfileSaveService().reclaim(uuid);
+                if (profile == null) {
+                    profile = read(uuid);
+                }
+
+                SlimyBeesPlugin.getRegistry().getPlayerProfiles().put(uuid, profile);
+            }
+
+            return profile;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Nonnull
+    private static SlimyBeesPlayerProfile read(UUID uuid) {
+        try {
+            return new SlimyBeesPlayerProfile(uuid, SlimyBeesPlugin.getPlayerDataStorage().loadProfile(uuid), true);
+        } catch (IOException e) {
+            // saving an empty profile would overwrite the player's data
+            SlimyBeesPlugin.logger().log(Level.SEVERE, "Could not load the profile of player " + uuid
+                    + ", changes made to it will not be saved", e);
+            return new SlimyBeesPlayerProfile(uuid, ProfileDataDTO.empty(), false);
+        }
+    }
+
     /**
      * Returns a {@link SlimyBeesPlayerProfile} for a given {@link UUID} if
      * the profile has been cached already.
@@ -118,23 +223,79 @@ public class SlimyBeesPlayerProfile {
      * @return True if this {@link SlimyBeesPlayerProfile} should be saved, false otherwise
      */
     public boolean isDirty() {
-        return dirty;
+        return dirty && loaded;
+    }
+
+    /**
+     * Marks this {@link SlimyBeesPlayerProfile} to be saved again,
+     * e.g. when writing the last {@link Snapshot} failed.
+     */
+    public void markDirty() {
+        dirty = true;
     }
 
     public void markForDeletion() {
         markedForDeletion = true;
     }
 
+    public void unmarkForDeletion() {
+        markedForDeletion = false;
+    }
+
     public boolean isMarkedForDeletion() {
         return markedForDeletion;
     }
 
+    @Nonnull
+    public UUID getUuid() {
+        return uuid;
+    }
+
     /**
-     * Saves the bee config file
+     * Saves this {@link SlimyBeesPlayerProfile} on the current thread.
+     * Prefer {@link ProfileSaveService#save(SlimyBeesPlayerProfile)}, which doesn't block the caller.
      */
     public void save() {
-        beeConfig.save();
+        if (!loaded) {
+            return;
+        }
+
+        try {
+            SlimyBeesPlugin.getPlayerDataStorage().saveProfiles(Collections.singletonList(createSnapshot()));
+        } catch (IOException e) {
+            markDirty();
+            SlimyBeesPlugin.logger().severe("Could not save the profile of player " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the current state of this {@link SlimyBeesPlayerProfile} and marks it as not dirty.
+     * Has to be called from the main thread.
+     *
+     * @return The {@link Snapshot} of this {@link SlimyBeesPlayerProfile}
+     */
+    @Nonnull
+    public Snapshot createSnapshot() {
         dirty = false;
+
+        long baseVersion;
+        synchronized (writeLock) {
+            baseVersion = storageVersion;
+        }
+
+        return new Snapshot(this, ++snapshotVersion, baseVersion, (BitSet) discoveredBees.clone(), new HashSet<>(unknownBees));
+    }
+
+    /**
+     * Returns whether the last {@link Snapshot} of this {@link SlimyBeesPlayerProfile} has been written.
+     * Changes made after the snapshot was taken are not considered.
+     *
+     * @return True if the last {@link Snapshot} has been written, false otherwise
+     */
+    public boolean isSaved() {
+        synchronized (writeLock) {
+            return savedVersion >= snapshotVersion;
+        }
     }
 
     /**
@@ -147,7 +308,13 @@ public class SlimyBeesPlayerProfile {
     public void discoverBee(AlleleSpecies species, boolean discover) {
         Validate.notNull(species, "The discovered bee species must not be null!");
 
-        discoverBee(species.getUid(), discover);
+        if (species.getId() < 0) {
+            discoverBee(species.getUid(), discover);
+            return;
+        }
+
+        discoveredBees.set(species.getId(), discover);
+        dirty = true;
     }
 
     /**
@@ -160,18 +327,85 @@ public class SlimyBeesPlayerProfile {
     public void discoverBee(String speciesUid, boolean discover) {
         Validate.notNull(speciesUid, "发现的蜂种 uid 不能为 null!");
 
-        String key = BEE_SPECIES_KEY + "." + speciesUid;
-        if (discover) {
-            beeConfig.setValue(key, true);
-            discoveredBees.add(speciesUid);
+        int id = alleleRegistry.getAssignedId(ChromosomeType.SPECIES, speciesUid);
+        if (id >= 0) {
+            discoveredBees.set(id, discover);
+        } else if (discover) {
+            unknownBees.add(speciesUid);
         } else {
-            beeConfig.setValue(key, null);
-            discoveredBees.remove(speciesUid);
+            unknownBees.remove(speciesUid);
         }
 
         dirty = true;
     }
 
+    /**
+     * Marks all species with ids in given {@link BitSet} as discovered.
+     *
+     * @param speciesIds The {@link BitSet} of species ids to discover
+     */
+    public void discoverAll(BitSet speciesIds) {
+        Validate.notNull(speciesIds, "发现的物种 id 不能为空!");
+
+        discoveredBees.or(speciesIds);
+        dirty = true;
+    }
+
+    /**
+     * Returns the version of the last {@link Snapshot} taken of this {@link SlimyBeesPlayerProfile}.
+     * Can be called from any thread.
+     *
+     * @return The snapshot version
+     */
+    public long getSnapshotVersion() {
+        return snapshotVersion;
+    }
+
+    /**
+     * Replaces the discoveries of this {@link SlimyBeesPlayerProfile} with data saved by another server.
+     * Local changes which might not be part of the data are kept and the profile is saved again with them.
+     * The data only replaces the profile if it is newer than anything this server has loaded or written,
+     * otherwise both are merged.
+     * Has to be called from the main thread.
+     *
+     * @param data The {@link ProfileDataDTO} loaded from a shared {@link PlayerDataStorage}
+     * @param loadedVersion The snapshot version of this profile when the data started loading,
+     *                      see {@link #getSnapshotVersion()}, or -1 to always keep the local discoveries
+     */
+    public void applyRemoteData(ProfileDataDTO data, long loadedVersion) {
+        Validate.notNull(data, "档案数据不能为空!");
+
+        boolean newer;
+        synchronized (writeLock) {
+            newer = data.getStorageVersion() > storageVersion;
+            storageVersion = Math.max(storageVersion, data.getStorageVersion());
+        }
+
+        // a snapshot taken while the data was loading might have been written after it was read
+        if (!newer || isDirty() || !isSaved() || snapshotVersion != loadedVersion) {
+            // both servers changed the profile, a discovery is never lost on either of them
+            int count = discoveredBees.cardinality();
+            discoveredBees.or(data.getDiscoveredIds());
+            boolean changed = unknownBees.addAll(data.getUnknownBees()) || discoveredBees.cardinality() != count;
+            // data already known does not need to be written back, that would only bounce it between the servers
+            dirty |= changed;
+        } else {
+            discoveredBees.clear();
+            discoveredBees.or(data.getDiscoveredIds());
+            unknownBees.clear();
+            unknownBees.addAll(data.getUnknownBees());
+        }
+    }
+
+    /**
+     * Marks all species as not discovered.
+     */
+    public void undiscoverAll() {
+        discoveredBees.clear();
+        unknownBees.clear();
+        dirty = true;
+    }
+
     /**
      * Returns whether this {@link SlimyBeesPlayerProfile}'s {@link OfflinePlayer}
      * has discovered given {@link AlleleSpecies}.
@@ -182,7 +416,41 @@ public class SlimyBeesPlayerProfile {
     public boolean hasDiscovered(AlleleSpecies species) {
         Validate.notNull(species, "蜜蜂种类不能为空!");
 
-        return discoveredBees.contains(species.getUid());
+        int id = species.getId();
+        return id >= 0 ? discoveredBees.get(id) : unknownBees.contains(species.getUid());
+    }
+
+    /**
+     * Returns a copy of the ids of all discovered species.
+     *
+     * @return {@link BitSet} of the ids of all discovered species
+     */
+    @Nonnull
+    public BitSet getDiscoveredIds() {
+        return (BitSet) discoveredBees.clone();
+    }
+
+    /**
+     * Returns the number of all discovered species, including ones which are not registered anymore.
+     *
+     * @return The number of discovered species
+     */
+    public int getDiscoveredCount() {
+        return discoveredBees.cardinality() + unknownBees.size();
+    }
+
+    /**
+     * Returns the number of discovered species with an id in given {@link BitSet}.
+     *
+     * @param speciesIds The {@link BitSet} of species ids to count
+     * @return The number of discovered species
+     */
+    public int countDiscovered(BitSet speciesIds) {
+        Validate.notNull(speciesIds, "计数的物种 id 不能为空!");
+
+        BitSet discovered = (BitSet) discoveredBees.clone();
+        discovered.and(speciesIds);
+        return discovered.cardinality();
     }
 
     /**
@@ -192,7 +460,141 @@ public class SlimyBeesPlayerProfile {
      */
     @Nonnull
     public ImmutableSet<String> getDiscoveredBees() {
-        return ImmutableSet.copyOf(discoveredBees.iterator());
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (int id = discoveredBees.nextSetBit(0); id >= 0; id = discoveredBees.nextSetBit(id + 1)) {
+            String uid = alleleRegistry.getAssignedUid(ChromosomeType.SPECIES, id);
+            if (uid != null) {
+                builder.add(uid);
+            }
+        }
+
+        return builder.addAll(unknownBees).build();
+    }
+
+    /**
+     * An immutable copy of the persisted state of a {@link SlimyBeesPlayerProfile}.
+     * Written by a {@link PlayerDataStorage}, which has to make sure an older snapshot
+     * never overwrites a newer one.
+     */
+    public static final class Snapshot {
+
+        private final SlimyBeesPlayerProfile profile;
+        private final long version;
+        private final long storageVersion;
+        private final BitSet discoveredBees;
+        private final Set<String> unknownBees;
+
+        private Snapshot(SlimyBeesPlayerProfile profile, long version, long storageVersion,
+                         BitSet discoveredBees, Set<String> unknownBees) {
+            this.profile = profile;
+            this.version = version;
+            this.storageVersion = storageVersion;
+            this.discoveredBees = discoveredBees;
+            this.unknownBees = unknownBees;
+        }
+
+        @Nonnull
+        public SlimyBeesPlayerProfile getProfile() {
+            return profile;
+        }
+
+        @Nonnull
+        public UUID getUuid() {
+            return profile.uuid;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the version of the stored data this {@link Snapshot} is based on.
+         * If the stored profile has a different version, another server wrote it in the meantime.
+         *
+         * @return The storage version, see {@link ProfileDataDTO#getStorageVersion()}
+         */
+        public long getStorageVersion() {
+            return storageVersion;
+        }
+
+        /**
+         * Returns the ids of discovered species, the returned {@link BitSet} must not be changed.
+         *
+         * @return {@link BitSet} of the ids of discovered species
+         */
+        @Nonnull
+        public BitSet getDiscoveredIds() {
+            return discoveredBees;
+        }
+
+        @Nonnull
+        public Set<String> getUnknownBees() {
+            return Collections.unmodifiableSet(unknownBees);
+        }
+
+        /**
+         * Returns whether the same or a newer {@link Snapshot} of the profile has been written already.
+         *
+         * @return True if this {@link Snapshot} does not need to be written, false otherwise
+         */
+        public boolean isOutdated() {
+            synchronized (profile.writeLock) {
+                return version <= profile.savedVersion;
+            }
+        }
+
+        /**
+         * Marks this {@link Snapshot} as written.
+         * Storages writing several snapshots at once should check {@link #isOutdated()} before writing
+         * and call this afterwards, all while making sure no other thread writes the same profile.
+         */
+        public void markWritten() {
+            synchronized (profile.writeLock) {
+                profile.savedVersion = Math.max(profile.savedVersion, version);
+            }
+        }
+
+        /**
+         * Marks this {@link Snapshot} as written, like {@link #markWritten()},
+         * and remembers the new version of the stored profile.
+         *
+         * @param newStorageVersion The version the stored profile has after the write
+         */
+        public void markWritten(long newStorageVersion) {
+            synchronized (profile.writeLock) {
+                profile.savedVersion = Math.max(profile.savedVersion, version);
+                profile.storageVersion = Math.max(profile.storageVersion, newStorageVersion);
+            }
+        }
+
+        /**
+         * Writes this {@link Snapshot} using given {@link Writer}, unless it is outdated.
+         * No other snapshot of the same profile is written meanwhile.
+         *
+         * @param writer The {@link Writer} to use
+         * @throws IOException If the {@link Writer} fails
+         */
+        public void writeIfNewer(Writer writer) throws IOException {
+            Validate.notNull(writer, "快照写入器不能为空!");
+
+            synchronized (profile.writeLock) {
+                if (version > profile.savedVersion) {
+                    writer.write(this);
+                    profile.savedVersion = version;
+                }
+            }
+        }
+
+        /**
+         * Writes a single {@link Snapshot}.
+         */
+        @FunctionalInterface
+        public interface Writer {
+
+            void write(Snapshot snapshot) throws IOException;
+
+        }
+
     }
 
 }
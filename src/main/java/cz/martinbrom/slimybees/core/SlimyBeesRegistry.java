@@ -2,7 +2,6 @@ package cz.martinbrom.slimybees.core;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -21,7 +20,8 @@ import cz.martinbrom.slimybees.worldgen.NestDTO;
 @ParametersAreNonnullByDefault
 public class SlimyBeesRegistry {
 
-    private final Map<UUID, SlimyBeesPlayerProfile> profiles = new HashMap<>();
+    // profiles are loaded asynchronously and read by ticker threads
+    private final Map<UUID, SlimyBeesPlayerProfile> profiles = new ConcurrentHashMap<>();
 
     // could use a HashMap but there are only three so it makes almost no difference
     private final Map<Biome, List<NestDTO>> overworldNestMap = new ConcurrentHashMap<>();
@@ -1,8 +1,7 @@
 package cz.martinbrom.slimybees.core.genetics;
 
-import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 import javax.annotation.Nonnull;
@@ -15,6 +14,7 @@ import org.bukkit.inventory.ItemStack;
 import cz.martinbrom.slimybees.core.BeeLifespanService;
 import cz.martinbrom.slimybees.core.BeeLoreService;
 import cz.martinbrom.slimybees.core.BeeMutationDTO;
+import cz.martinbrom.slimybees.core.BeeMutationTable;
 import cz.martinbrom.slimybees.core.BeeRegistry;
 import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
@@ -36,26 +36,36 @@ import static cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType.CHROMOS
 @ParametersAreNonnullByDefault
 public class BeeGeneticService {
 
+    private static final ChromosomeType[] TYPES = ChromosomeType.values();
+    private static final int GENE_COUNT = CHROMOSOME_COUNT * 2;
+    private static final ThreadLocal<BreedingBuffer> BUFFERS = ThreadLocal.withInitial(BreedingBuffer::new);
+
     private final CustomItemDataService beeTypeService;
     private final BeeLoreService beeLoreService;
     private final BeeRegistry beeRegistry;
     private final GenomeParser genomeParser;
     private final AlleleRegistry alleleRegistry;
     private final BeeLifespanService lifespanService;
+    private final GenomeInterner genomeInterner;
 
     public BeeGeneticService(CustomItemDataService beeTypeService, BeeLoreService beeLoreService, BeeRegistry beeRegistry,
-                             GenomeParser genomeParser, AlleleRegistry alleleRegistry, BeeLifespanService lifespanService) {
+                             GenomeParser genomeParser, AlleleRegistry alleleRegistry, BeeLifespanService lifespanService,
+                             GenomeInterner genomeInterner) {
         this.beeTypeService = beeTypeService;
         this.beeLoreService = beeLoreService;
         this.beeRegistry = beeRegistry;
         this.genomeParser = genomeParser;
         this.alleleRegistry = alleleRegistry;
         this.lifespanService = lifespanService;
+        this.genomeInterner = genomeInterner;
     }
 
     /**
      * Performs a breeding process for two parents represented by given {@link Genome}s.
      * Returns a {@link BreedingResultDTO} containing all needed breeding results.
+     * <p>
+     * The children are combined as plain arrays of {@link Allele} ids in a per-thread buffer,
+     * {@link ItemStack}s are only created once all of them are done.
      *
      * @param princessGenome The princess' {@link Genome}
      * @param droneGenome The drone's {@link Genome}
@@ -67,109 +77,81 @@ public class BeeGeneticService {
         Validate.notNull(princessGenome, "公主基因组不能为空!");
         Validate.notNull(droneGenome, "无人机基因组不得为空!");
 
-        // create drones
-        Genome[] genomes = getChildrenGenomes(princessGenome, droneGenome);
-        ItemStack[] drones = new ItemStack[genomes.length];
-        for (int i = 0; i < genomes.length; i++) {
-            drones[i] = createChildItemStack(genomes[i], false);
-        }
-
-        // create princess
-        Genome childPrincessGenome = combineGenomes(princessGenome, droneGenome);
-        ItemStack princess = createChildItemStack(childPrincessGenome, true);
-
-        return new BreedingResultDTO(princess, drones, lifespanService.getLifespan(princessGenome, modifier));
-    }
+        BreedingBuffer buffer = BUFFERS.get();
+        int[] parents = buffer.parents;
+        writeAlleleIds(princessGenome, parents, 0);
+        writeAlleleIds(droneGenome, parents, GENE_COUNT);
 
-    /**
-     * Performs a breeding process for two parents represented by given {@link Genome}s.
-     * Returns a {@link Genome} for each child.
-     *
-     * @param firstGenome  The first parent's {@link Genome}
-     * @param secondGenome The second parent's {@link Genome}
-     * @return {@link Genome} for each child created by the breeding process
-     */
-    private Genome[] getChildrenGenomes(Genome firstGenome, Genome secondGenome) {
-        Validate.notNull(firstGenome, "第一个基因组不能为零!");
-        Validate.notNull(secondGenome, "第二个基因组不能为零!");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int fertilityValue = chooseRandom(princessGenome, droneGenome).getFertilityValue();
+        int droneCount = 1 + random.nextInt(fertilityValue);
 
-        int fertilityValue = chooseRandom(firstGenome, secondGenome).getFertilityValue();
-        int childrenCount = 1 + ThreadLocalRandom.current().nextInt(fertilityValue);
+        // drones go first, the princess is the last child
+        int[] children = buffer.getChildren(droneCount + 1);
+        for (int i = 0; i <= droneCount; i++) {
+            combineGenomes(parents, children, i * GENE_COUNT, random);
+        }
 
-        Genome[] output = new Genome[childrenCount];
-        for (int i = 0; i < childrenCount; i++) {
-            output[i] = combineGenomes(firstGenome, secondGenome);
+        ItemStack[] drones = new ItemStack[droneCount];
+        for (int i = 0; i < droneCount; i++) {
+            drones[i] = createChildItemStack(children, i * GENE_COUNT, false);
         }
+        ItemStack princess = createChildItemStack(children, droneCount * GENE_COUNT, true);
 
-        return output;
+        return new BreedingResultDTO(princess, drones, lifespanService.getLifespan(princessGenome, modifier));
     }
 
     /**
-     * Combines two given {@link Genome}s into a single one.
+     * Combines two parent {@link Genome}s (given as {@link Allele} ids) into a single one.
      * Roughly follows the real-life genetic rules.
      *
-     * @param firstGenome  The {@link Genome} from the first parent
-     * @param secondGenome The {@link Genome} from the second parent
-     * @return The {@link Genome} created by merging both parents {@link Genome}s
+     * @param parents {@link Allele} ids of the first parent followed by the ones of the second parent
+     * @param children Array to store the child's {@link Allele} ids in
+     * @param offset Index of the first child's {@link Allele} id
+     * @param random The {@link Random} to use
      */
-    @Nonnull
-    private Genome combineGenomes(Genome firstGenome, Genome secondGenome) {
-        Chromosome[] firstChromosomes = firstGenome.getChromosomes();
-        Chromosome[] secondChromosomes = secondGenome.getChromosomes();
-
+    private void combineGenomes(int[] parents, int[] children, int offset, Random random) {
         // take one half of each chromosome from each parent and merge the halves
         // together to form the child's chromosomes
-        Chromosome[] combinedChromosomes = new Chromosome[CHROMOSOME_COUNT];
-        for (int i = 0; i < CHROMOSOME_COUNT; i++) {
-            combinedChromosomes[i] = combineChromosomes(firstChromosomes[i], secondChromosomes[i]);
-        }
+        for (int i = 0; i < GENE_COUNT; i += 2) {
+            int firstAllele = parents[i + (random.nextBoolean() ? 0 : 1)];
+            int secondAllele = parents[GENE_COUNT + i + (random.nextBoolean() ? 0 : 1)];
 
-        tryMutate(combinedChromosomes);
-        return new Genome(combinedChromosomes);
-    }
-
-    /**
-     * Combines two {@link Chromosome}s into one.
-     * Roughly follows the real-life genetic rules.
-     *
-     * @param firstChromosome  The {@link Chromosome} of the first parent
-     * @param secondChromosome The {@link Chromosome} of the second parent
-     * @return The {@link Chromosome} created by merging both parents {@link Chromosome}s
-     */
-    @Nonnull
-    private Chromosome combineChromosomes(Chromosome firstChromosome, Chromosome secondChromosome) {
-        // choose a random allele from each chromosome
-        Allele firstAllele = chooseRandom(firstChromosome.getPrimaryAllele(), firstChromosome.getSecondaryAllele());
-        Allele secondAllele = chooseRandom(secondChromosome.getPrimaryAllele(), secondChromosome.getSecondaryAllele());
+            // and create a new chromosome with a chance to swap the alleles
+            setSwappedChromosome(children, offset + i, firstAllele, secondAllele, random);
+        }
 
-        // and create a new chromosome with a chance to swap the alleles
-        return chooseRandom(new Chromosome(firstAllele, secondAllele), new Chromosome(secondAllele, firstAllele));
+        tryMutate(children, offset, random);
     }
 
     /**
-     * Tries to find and apply a mutation to a given array of {@link Chromosome}s.
-     * The available mutations are determined by the given parents unique ids.
+     * Tries to find and apply a mutation to a given child's {@link Allele} ids.
+     * The available mutations are determined by the species of the child.
      *
-     * @param chromosomes Child {@link Chromosome}s to apply the mutation to
+     * @param children Array containing the child's {@link Allele} ids
+     * @param offset Index of the first child's {@link Allele} id
+     * @param random The {@link Random} to use
      */
-    private void tryMutate(Chromosome[] chromosomes) {
-        AlleleSpecies firstSpecies = (AlleleSpecies) chromosomes[ChromosomeType.SPECIES.ordinal()].getPrimaryAllele();
-        AlleleSpecies secondSpecies = (AlleleSpecies) chromosomes[ChromosomeType.SPECIES.ordinal()].getSecondaryAllele();
-
-        List<BeeMutationDTO> mutations = beeRegistry.getMutationsForParents(firstSpecies, secondSpecies);
+    private void tryMutate(int[] children, int offset, Random random) {
+        AlleleSpecies firstSpecies = (AlleleSpecies) alleleRegistry.getById(ChromosomeType.SPECIES, children[offset]);
+        AlleleSpecies secondSpecies = (AlleleSpecies) alleleRegistry.getById(ChromosomeType.SPECIES, children[offset + 1]);
+        if (firstSpecies == null || secondSpecies == null) {
+            return;
+        }
 
-        Collections.shuffle(mutations);
-        for (BeeMutationDTO mutation : mutations) {
-            if (mutation != null && ThreadLocalRandom.current().nextDouble() < mutation.getChance()) {
-                Allele[] partialTemplate = beeRegistry.getPartialTemplate(mutation.getChild());
-                updateMutatedChromosomes(chromosomes, partialTemplate);
+        BeeMutationTable mutationTable = beeRegistry.getMutationTable();
+        if (!mutationTable.hasMutations(firstSpecies, secondSpecies)) {
+            return;
+        }
 
-                return;
-            }
+        BeeMutationDTO mutation = mutationTable.chooseMutation(firstSpecies, secondSpecies, random.nextDouble());
+        if (mutation != null) {
+            Allele[] partialTemplate = beeRegistry.getPartialTemplate(mutation.getChild());
+            updateMutatedChromosomes(children, offset, partialTemplate, random);
         }
     }
 
-    private void updateMutatedChromosomes(Chromosome[] chromosomes, @Nullable Allele[] partialTemplate) {
+    private void updateMutatedChromosomes(int[] children, int offset, @Nullable Allele[] partialTemplate, Random random) {
         // nothing to apply, exit early
         if (partialTemplate == null) {
             return;
@@ -178,21 +160,36 @@ public class BeeGeneticService {
         for (int i = 0; i < CHROMOSOME_COUNT; i++) {
             // null means keeping the old chromosomes intact
             if (partialTemplate[i] != null) {
-                Allele firstAllele = chromosomes[i].getPrimaryAllele();
-                Allele secondAllele = chromosomes[i].getSecondaryAllele();
+                int index = offset + i * 2;
+                int firstAllele = children[index];
+                int secondAllele = children[index + 1];
 
-                if (ThreadLocalRandom.current().nextBoolean()) {
-                    firstAllele = partialTemplate[i];
+                if (random.nextBoolean()) {
+                    firstAllele = partialTemplate[i].getId();
                 } else {
-                    secondAllele = partialTemplate[i];
+                    secondAllele = partialTemplate[i].getId();
                 }
 
                 // create a new chromosome with a chance to swap the alleles
-                chromosomes[i] = chooseRandom(new Chromosome(firstAllele, secondAllele), new Chromosome(secondAllele, firstAllele));
+                setSwappedChromosome(children, index, firstAllele, secondAllele, random);
             }
         }
     }
 
+    private void setSwappedChromosome(int[] children, int index, int firstAllele, int secondAllele, Random random) {
+        boolean swap = !random.nextBoolean();
+        children[index] = swap ? secondAllele : firstAllele;
+        children[index + 1] = swap ? firstAllele : secondAllele;
+    }
+
+    private void writeAlleleIds(Genome genome, int[] target, int offset) {
+        for (int i = 0; i < CHROMOSOME_COUNT; i++) {
+            Chromosome chromosome = genome.getChromosome(TYPES[i]);
+            target[offset + i * 2] = chromosome.getPrimaryAllele().getId();
+            target[offset + i * 2 + 1] = chromosome.getSecondaryAllele().getId();
+        }
+    }
+
     /**
      * Tries to load a {@link Genome} for a given {@link ItemStack}.
      * Checks whether the {@link ItemStack} is an {@link AbstractBee}.
@@ -238,6 +235,36 @@ public class BeeGeneticService {
         return genomeStr.map(genomeParser::parse).orElse(null);
     }
 
+    /**
+     * Serializes given {@link Genome} into its compact string form.
+     *
+     * @param genome The {@link Genome} to serialize
+     * @return The serialized {@link Genome}
+     */
+    @Nonnull
+    public String serializeGenome(Genome genome) {
+        Validate.notNull(genome, "无法序列化空基因组!");
+
+        return genomeParser.serialize(genome);
+    }
+
+    /**
+     * Creates an unknown bee {@link ItemStack} with given serialized {@link Genome},
+     * the same way bees are created when they are bred.
+     *
+     * @param genomeStr The serialized {@link Genome}
+     * @param princess Whether the {@link ItemStack} should be a princess or a drone
+     * @return An {@link ItemStack} with stored genes and representing an "unknown species"
+     */
+    @Nonnull
+    public ItemStack createChildItemStack(String genomeStr, boolean princess) {
+        Validate.notNull(genomeStr, "无法从空基因组创建蜜蜂!");
+
+        int[] alleleIds = new int[GENE_COUNT];
+        writeAlleleIds(genomeParser.parse(genomeStr), alleleIds, 0);
+        return createChildItemStack(alleleIds, 0, princess);
+    }
+
     /**
      * Helper method to store a {@link Genome} in a given {@link ItemStack}.
      *
@@ -290,21 +317,31 @@ public class BeeGeneticService {
     }
 
     /**
-     * Creates an unknown bee {@link ItemStack} with stored genes using the given {@link Genome}.
+     * Creates an unknown bee {@link ItemStack} with stored genes using the given {@link Allele} ids.
      *
-     * @param genome   The {@link Genome} that determines the bee {@link ItemStack}
+     * @param children Array containing the child's {@link Allele} ids
+     * @param offset Index of the first child's {@link Allele} id
      * @param princess Whether the {@link ItemStack} should be a princess or a drone
      * @return An {@link ItemStack} with stored genes and representing an "unknown species"
      */
     @Nonnull
-    private ItemStack createChildItemStack(Genome genome, boolean princess) {
-        ItemStack item = princess
-                ? genome.getSpecies().getPrincessItemStack()
-                : genome.getSpecies().getDroneItemStack();
-
-        ItemStack copy = beeLoreService.makeUnknown(item);
-        updateItemGenome(copy, genome);
+    private ItemStack createChildItemStack(int[] children, int offset, boolean princess) {
+        Allele primarySpecies = alleleRegistry.getById(ChromosomeType.SPECIES, children[offset]);
+        Allele secondarySpecies = alleleRegistry.getById(ChromosomeType.SPECIES, children[offset + 1]);
+        Validate.notNull(primarySpecies, "未知的物种等位基因 id: " + children[offset]);
+        Validate.notNull(secondarySpecies, "未知的物种等位基因 id: " + children[offset + 1]);
+
+        AlleleSpecies species = (AlleleSpecies) genomeInterner.getChromosome(ChromosomeType.SPECIES, primarySpecies, secondarySpecies).getActiveAllele();
+        ItemStack unknownItem = princess ? species.getUnknownPrincessItemStack() : species.getUnknownDroneItemStack();
+
+        ItemStack copy;
+        if (unknownItem != null) {
+            copy = unknownItem.clone();
+        } else {
+            copy = beeLoreService.makeUnknown(princess ? species.getPrincessItemStack() : species.getDroneItemStack());
+        }
 
+        beeTypeService.setItemData(copy, genomeParser.serialize(children, offset));
         return copy;
     }
 
@@ -336,7 +373,7 @@ public class BeeGeneticService {
         Allele secondaryAllele = secondary ? newAllele : chromosome.getSecondaryAllele();
 
         if (primaryAllele != null && secondaryAllele != null) {
-            chromosomes[type.ordinal()] = new Chromosome(primaryAllele, secondaryAllele);
+            chromosomes[type.ordinal()] = genomeInterner.getChromosome(type, primaryAllele, secondaryAllele);
             return new Genome(chromosomes);
         }
 
@@ -347,7 +384,7 @@ public class BeeGeneticService {
     private Chromosome[] getChromosomesFromAlleles(Allele[] alleles) {
         Chromosome[] chromosomes = new Chromosome[alleles.length];
         for (int i = 0; i < alleles.length; i++) {
-            chromosomes[i] = new Chromosome(alleles[i]);
+            chromosomes[i] = genomeInterner.getChromosome(TYPES[i], alleles[i]);
         }
 
         return chromosomes;
@@ -367,4 +404,24 @@ public class BeeGeneticService {
                 : second;
     }
 
+    /**
+     * Reusable per-thread buffer for {@link Allele} ids of the parents and children.
+     * Both {@link Allele} ids of each {@link Chromosome} are stored next to each other, primary first.
+     */
+    private static class BreedingBuffer {
+
+        private final int[] parents = new int[GENE_COUNT * 2];
+        private int[] children = new int[GENE_COUNT * 4];
+
+        @Nonnull
+        private int[] getChildren(int count) {
+            if (children.length < count * GENE_COUNT) {
+                children = new int[count * GENE_COUNT];
+            }
+
+            return children;
+        }
+
+    }
+
 }
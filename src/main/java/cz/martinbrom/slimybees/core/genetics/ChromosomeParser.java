@@ -18,10 +18,12 @@ public class ChromosomeParser {
 
     private final BeeRegistry beeRegistry;
     private final AlleleRegistry alleleRegistry;
+    private final GenomeInterner genomeInterner;
 
-    public ChromosomeParser(BeeRegistry beeRegistry, AlleleRegistry alleleRegistry) {
+    public ChromosomeParser(BeeRegistry beeRegistry, AlleleRegistry alleleRegistry, GenomeInterner genomeInterner) {
         this.beeRegistry = beeRegistry;
         this.alleleRegistry = alleleRegistry;
+        this.genomeInterner = genomeInterner;
     }
 
     @Nonnull
@@ -32,7 +34,7 @@ public class ChromosomeParser {
         Allele firstAllele = validateOrGetDefault(alleleRegistry.get(ChromosomeType.SPECIES, parts[0]), ChromosomeType.SPECIES, parts[0]);
         Allele secondAllele = validateOrGetDefault(alleleRegistry.get(ChromosomeType.SPECIES, parts[1]), ChromosomeType.SPECIES, parts[1]);
 
-        return new Chromosome(firstAllele, secondAllele);
+        return genomeInterner.getChromosome(ChromosomeType.SPECIES, firstAllele, secondAllele);
     }
 
     @Nonnull
@@ -51,7 +53,26 @@ public class ChromosomeParser {
 
         Allele firstAllele = validateOrGetDefault(uncheckedFirstAllele, type, firstSpecies);
         Allele secondAllele = validateOrGetDefault(uncheckedSecondAllele, type, secondSpecies);
-        return new Chromosome(firstAllele, secondAllele);
+        return genomeInterner.getChromosome(type, firstAllele, secondAllele);
+    }
+
+    @Nonnull
+    public Chromosome parseSpecies(int firstId, int secondId) {
+        Allele firstAllele = alleleRegistry.getById(ChromosomeType.SPECIES, firstId);
+        Allele secondAllele = alleleRegistry.getById(ChromosomeType.SPECIES, secondId);
+        if (firstAllele == null || secondAllele == null) {
+            throw new IllegalArgumentException("序列化基因组中的物种 id 未知: " + firstId + ", " + secondId);
+        }
+
+        return genomeInterner.getChromosome(ChromosomeType.SPECIES, firstAllele, secondAllele);
+    }
+
+    @Nonnull
+    public Chromosome parse(int firstId, int secondId, ChromosomeType type, String firstSpecies, String secondSpecies) {
+        // unknown ids (the allele was removed) fall back to the species default, same as with missing chromosomes
+        Allele firstAllele = validateOrGetDefault(alleleRegistry.getById(type, firstId), type, firstSpecies);
+        Allele secondAllele = validateOrGetDefault(alleleRegistry.getById(type, secondId), type, secondSpecies);
+        return genomeInterner.getChromosome(type, firstAllele, secondAllele);
     }
 
     @Nonnull
@@ -13,6 +13,12 @@ import cz.martinbrom.slimybees.core.genetics.alleles.AllelePlant;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleSpecies;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
 
+/**
+ * This class represents the genetic information of a bee.
+ * Instances are immutable and can be shared between multiple bees.
+ *
+ * @see GenomeInterner
+ */
 @ParametersAreNonnullByDefault
 public class Genome {
 
@@ -22,9 +28,19 @@ public class Genome {
         this.chromosomes = chromosomes;
     }
 
+    /**
+     * Returns a copy of all {@link Chromosome}s, ordered by {@link ChromosomeType}.
+     *
+     * @return Copy of the {@link Chromosome}s
+     */
     @Nonnull
     public Chromosome[] getChromosomes() {
-        return chromosomes;
+        return chromosomes.clone();
+    }
+
+    @Nonnull
+    public Chromosome getChromosome(ChromosomeType type) {
+        return chromosomes[type.ordinal()];
     }
 
     @Nonnull
@@ -90,7 +106,7 @@ public class Genome {
 
     @Nonnull
     public Allele getActiveAllele(ChromosomeType type) {
-        return getChromosomes()[type.ordinal()].getActiveAllele();
+        return chromosomes[type.ordinal()].getActiveAllele();
     }
 
 }
@@ -0,0 +1,137 @@
+package cz.martinbrom.slimybees.core.genetics;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+import static cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType.CHROMOSOME_COUNT;
+
+/**
+ * This class makes sure that identical bees share the same {@link Genome} and {@link Chromosome} instances.
+ * Both classes are immutable, so sharing them is safe.
+ * <p>
+ * {@link Genome}s are cached by their serialized form (with a bounded size), {@link Chromosome}s
+ * are canonical for each pair of {@link Allele}s.
+ */
+@ParametersAreNonnullByDefault
+public class GenomeInterner {
+
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    private final Cache<String, Genome> genomes;
+
+    // indexed by chromosome type, primary allele id and secondary allele id
+    private final Chromosome[][][] chromosomes = new Chromosome[CHROMOSOME_COUNT][][];
+
+    public GenomeInterner(Config config) {
+        Validate.notNull(config, "配置不能为空!");
+
+        int size = config.getInt("options.genome-cache-size");
+        genomes = CacheBuilder.newBuilder()
+                .maximumSize(size < 1 ? DEFAULT_CACHE_SIZE : size)
+                .build();
+    }
+
+    /**
+     * Returns the cached {@link Genome} for given serialized form,
+     * or loads it using the given function and caches it.
+     *
+     * @param genomeStr The serialized {@link Genome}
+     * @param loader Function used to parse the {@link Genome} when it is not cached yet
+     * @return The shared {@link Genome} instance
+     */
+    @Nonnull
+    public Genome getGenome(String genomeStr, Function<String, Genome> loader) {
+        Genome genome = genomes.getIfPresent(genomeStr);
+        if (genome == null) {
+            genome = loader.apply(genomeStr);
+            genomes.put(genomeStr, genome);
+        }
+
+        return genome;
+    }
+
+    /**
+     * Returns the canonical {@link Chromosome} consisting of given {@link Allele}s.
+     *
+     * @param type The {@link ChromosomeType} both {@link Allele}s belong to
+     * @param primary The primary {@link Allele}
+     * @param secondary The secondary {@link Allele}
+     * @return The shared {@link Chromosome} instance
+     */
+    @Nonnull
+    public Chromosome getChromosome(ChromosomeType type, Allele primary, Allele secondary) {
+        int primaryId = primary.getId();
+        int secondaryId = secondary.getId();
+
+        // unregistered alleles have no id, so there is nothing to index them by
+        if (primaryId < 0 || secondaryId < 0) {
+            return new Chromosome(primary, secondary);
+        }
+
+        // lock-free lookup, the tables are only ever replaced by bigger copies
+        // and chromosomes are immutable, so the worst case is a miss which is handled below
+        Chromosome[][] table = chromosomes[type.ordinal()];
+        if (table != null && primaryId < table.length) {
+            Chromosome[] row = table[primaryId];
+            if (row != null && secondaryId < row.length) {
+                Chromosome chromosome = row[secondaryId];
+                if (chromosome != null && chromosome.getPrimaryAllele() == primary && chromosome.getSecondaryAllele() == secondary) {
+                    return chromosome;
+                }
+            }
+        }
+
+        return createChromosome(type, primary, secondary);
+    }
+
+    /**
+     * Returns the canonical homozygous {@link Chromosome} for given {@link Allele}.
+     *
+     * @param type The {@link ChromosomeType} the {@link Allele} belongs to
+     * @param allele The {@link Allele}
+     * @return The shared {@link Chromosome} instance
+     */
+    @Nonnull
+    public Chromosome getChromosome(ChromosomeType type, Allele allele) {
+        return getChromosome(type, allele, allele);
+    }
+
+    @Nonnull
+    private synchronized Chromosome createChromosome(ChromosomeType type, Allele primary, Allele secondary) {
+        int primaryId = primary.getId();
+        int secondaryId = secondary.getId();
+        int size = Math.max(primaryId, secondaryId) + 1;
+
+        Chromosome[][] table = chromosomes[type.ordinal()];
+        if (table == null || table.length < size) {
+            table = table == null ? new Chromosome[size][] : Arrays.copyOf(table, size);
+            chromosomes[type.ordinal()] = table;
+        }
+
+        Chromosome[] row = table[primaryId];
+        if (row == null || row.length < size) {
+            row = row == null ? new Chromosome[size] : Arrays.copyOf(row, size);
+            table[primaryId] = row;
+        }
+
+        Chromosome chromosome = row[secondaryId];
+        if (chromosome == null || chromosome.getPrimaryAllele() != primary || chromosome.getSecondaryAllele() != secondary) {
+            chromosome = new Chromosome(primary, secondary);
+            row[secondaryId] = chromosome;
+        }
+
+        return chromosome;
+    }
+
+}
@@ -1,32 +1,166 @@
 package cz.martinbrom.slimybees.core.genetics;
 
 import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.Base64;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.apache.commons.lang.Validate;
 
+import cz.martinbrom.slimybees.core.genetics.alleles.Allele;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
 
 import static cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType.CHROMOSOME_COUNT;
 
+/**
+ * This class converts {@link Genome}s to and from their {@link String} representation.
+ * <p>
+ * Genomes are stored in a compact format - a prefix followed by base64 encoded bytes,
+ * which contain the format version, number of chromosomes and then the ids of both alleles
+ * of each chromosome (as variable length integers).
+ * <p>
+ * The legacy format (allele uids separated by {@link ChromosomeParser#DELIMITER} and {@link #DELIMITER})
+ * is still readable, items using it are migrated the next time their {@link Genome} is written.
+ */
 @ParametersAreNonnullByDefault
 public class GenomeParser {
 
     public static final String DELIMITER = "|";
+    public static final String COMPACT_PREFIX = "#";
+    public static final byte COMPACT_VERSION = 1;
+
+    private static final ChromosomeType[] TYPES = ChromosomeType.values();
+    private static final int MAX_VAR_INT_BYTES = 5;
 
     private final ChromosomeParser chromosomeParser;
+    private final GenomeInterner genomeInterner;
 
-    public GenomeParser(ChromosomeParser chromosomeParser) {
+    public GenomeParser(ChromosomeParser chromosomeParser, GenomeInterner genomeInterner) {
         this.chromosomeParser = chromosomeParser;
+        this.genomeInterner = genomeInterner;
     }
 
+    /**
+     * Parses the given serialized {@link Genome}.
+     * Identical strings share one {@link Genome} instance, see {@link GenomeInterner}.
+     *
+     * @param genomeStr The serialized {@link Genome}
+     * @return The parsed {@link Genome}
+     */
     @Nonnull
     public Genome parse(String genomeStr) {
         Validate.notNull(genomeStr, "序列化基因组不能为空");
 
+        return genomeInterner.getGenome(genomeStr, this::parseUncached);
+    }
+
+    @Nonnull
+    private Genome parseUncached(String genomeStr) {
+        if (genomeStr.startsWith(COMPACT_PREFIX)) {
+            return parseCompact(genomeStr);
+        }
+
+        return parseLegacy(genomeStr);
+    }
+
+    @Nonnull
+    public String serialize(Genome genome) {
+        Chromosome[] chromosomes = genome.getChromosomes();
+
+        byte[] data = new byte[2 + chromosomes.length * 2 * MAX_VAR_INT_BYTES];
+        data[0] = COMPACT_VERSION;
+        data[1] = (byte) chromosomes.length;
+
+        int position = 2;
+        for (Chromosome chromosome : chromosomes) {
+            position = writeVarInt(data, position, getAlleleId(chromosome.getPrimaryAllele()));
+            position = writeVarInt(data, position, getAlleleId(chromosome.getSecondaryAllele()));
+        }
+
+        return COMPACT_PREFIX + Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(data, position));
+    }
+
+    /**
+     * Serializes a {@link Genome} given as an array of {@link Allele} ids.
+     * The array has to contain the primary and secondary {@link Allele} id
+     * for each {@link ChromosomeType} (in order) starting at given offset.
+     *
+     * @param alleleIds Array containing the {@link Allele} ids
+     * @param offset Index of the first {@link Allele} id
+     * @return The serialized {@link Genome}
+     * @throws IllegalArgumentException If any of the ids is negative
+     */
+    @Nonnull
+    public String serialize(int[] alleleIds, int offset) {
+        byte[] data = new byte[2 + CHROMOSOME_COUNT * 2 * MAX_VAR_INT_BYTES];
+        data[0] = COMPACT_VERSION;
+        data[1] = (byte) CHROMOSOME_COUNT;
+
+        int position = 2;
+        for (int i = 0; i < CHROMOSOME_COUNT * 2; i++) {
+            int id = alleleIds[offset + i];
+            // negative ids cannot be parsed back, the genome would be unreadable
+            Validate.isTrue(id >= 0, "无法序列化未注册的等位基因, 等位基因 id: " + id);
+            position = writeVarInt(data, position, id);
+        }
+
+        return COMPACT_PREFIX + Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(data, position));
+    }
+
+    @Nonnull
+    private Genome parseCompact(String genomeStr) {
+        byte[] data = Base64.getDecoder().decode(genomeStr.substring(COMPACT_PREFIX.length()));
+        if (data.length < 2 || data[0] != COMPACT_VERSION) {
+            throw new IllegalArgumentException("不支持的序列化基因组格式: " + genomeStr);
+        }
+
+        int count = data[1];
+        if (count <= 0 || count > CHROMOSOME_COUNT) {
+            throw new IllegalArgumentException("序列化基因组中的染色体数量无效: " + genomeStr);
+        }
+
+        int[] ids = new int[count * 2];
+
+        // read variable length integers, 7 bits per byte, the highest bit marks a continuation
+        int position = 2;
+        for (int i = 0; i < ids.length; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= data.length || shift > 28) {
+                    throw new IllegalArgumentException("序列化基因组不完整或已损坏: " + genomeStr);
+                }
+
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            ids[i] = value;
+        }
+
+        Chromosome speciesChromosome = chromosomeParser.parseSpecies(ids[0], ids[1]);
+        String firstSpecies = speciesChromosome.getPrimaryAllele().getUid();
+        String secondSpecies = speciesChromosome.getSecondaryAllele().getUid();
+
+        Chromosome[] chromosomes = new Chromosome[CHROMOSOME_COUNT];
+        chromosomes[0] = speciesChromosome;
+        for (int i = 1; i < CHROMOSOME_COUNT; i++) {
+            if (i < count) {
+                chromosomes[i] = chromosomeParser.parse(ids[i * 2], ids[i * 2 + 1], TYPES[i], firstSpecies, secondSpecies);
+            } else {
+                // genome stored by an older version with less chromosomes, load species defaults
+                chromosomes[i] = chromosomeParser.parse(null, TYPES[i], firstSpecies, secondSpecies);
+            }
+        }
+
+        return new Genome(chromosomes);
+    }
+
+    @Nonnull
+    private Genome parseLegacy(String genomeStr) {
         String[] parts = genomeStr.split("\\" + DELIMITER);
 
         // we load species separately, if other chromosomes are missing, species is used to load default values
@@ -41,18 +175,29 @@ public class GenomeParser {
             // we will simply load the species default chromosomes for those missing in the string
             String chromosomeStr = parts.length > i ? parts[i] : null;
 
-            ChromosomeType type = ChromosomeType.values()[i];
-            chromosomes[i] = chromosomeParser.parse(chromosomeStr, type, firstSpecies, secondSpecies);
+            chromosomes[i] = chromosomeParser.parse(chromosomeStr, TYPES[i], firstSpecies, secondSpecies);
         }
 
         return new Genome(chromosomes);
     }
 
-    @Nonnull
-    public String serialize(Genome genome) {
-        return Arrays.stream(genome.getChromosomes())
-                .map(chromosomeParser::serialize)
-                .collect(Collectors.joining(DELIMITER));
+    private int getAlleleId(Allele allele) {
+        int id = allele.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("无法序列化未注册的等位基因: " + allele.getUid());
+        }
+
+        return id;
+    }
+
+    private int writeVarInt(byte[] data, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        data[position++] = (byte) value;
+        return position;
     }
 
 }
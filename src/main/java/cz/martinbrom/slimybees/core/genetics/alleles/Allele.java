@@ -8,6 +8,7 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.apache.commons.lang.Validate;
 
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
 import cz.martinbrom.slimybees.utils.PatternUtil;
 import cz.martinbrom.slimybees.utils.StringUtils;
 
@@ -19,6 +20,8 @@ public class Allele implements Comparable<Allele> {
     private final String displayName;
     private final boolean dominant;
 
+    private int id = -1;
+
     public Allele(String uid, String name, boolean dominant) {
         Validate.notEmpty(uid, "等位基因 uid 不得为空或为空！");
         Validate.isTrue(PatternUtil.UID_PATTERN.matcher(uid).matches(), "等位基因 uid 必须以前缀开头，" +
@@ -52,6 +55,21 @@ public class Allele implements Comparable<Allele> {
         return dominant;
     }
 
+    /**
+     * Returns the numeric id assigned to this {@link Allele} by the {@link AlleleRegistry}.
+     * Ids are unique and stable for each {@link ChromosomeType},
+     * -1 means that the {@link Allele} has not been registered yet.
+     *
+     * @return The id of this {@link Allele}
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
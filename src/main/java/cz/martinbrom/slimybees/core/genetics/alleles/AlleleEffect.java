@@ -9,6 +9,10 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.util.BoundingBox;
 
 @ParametersAreNonnullByDefault
 public class AlleleEffect extends Allele {
@@ -53,4 +57,41 @@ public class AlleleEffect extends Allele {
 
     public interface EffectFunction extends BiConsumer<Location, Integer> {}
 
+    /**
+     * An {@link EffectFunction} applied to every {@link LivingEntity} near the hive.
+     * Hives close to each other with the same function can share a single entity lookup,
+     * see {@link cz.martinbrom.slimybees.core.machine.HiveEffectDispatcher}.
+     */
+    public interface EntityEffectFunction extends EffectFunction {
+
+        double VERTICAL_RANGE = 1.5;
+
+        void apply(LivingEntity entity);
+
+        @Override
+        default void accept(Location l, Integer range) {
+            World world = l.getWorld();
+            if (world != null) {
+                BoundingBox area = getArea(l, range);
+                for (Entity entity : world.getNearbyEntities(area, n -> n instanceof LivingEntity && n.isValid())) {
+                    apply((LivingEntity) entity);
+                }
+            }
+        }
+
+        /**
+         * Returns the area affected by a hive at given {@link Location} with given range.
+         *
+         * @param l The hive {@link Location}
+         * @param range The range of the bees in the hive
+         * @return The affected area
+         */
+        @Nonnull
+        static BoundingBox getArea(Location l, int range) {
+            return new BoundingBox(l.getX() - range, l.getY() - VERTICAL_RANGE, l.getZ() - range,
+                    l.getX() + range, l.getY() + VERTICAL_RANGE, l.getZ() + range);
+        }
+
+    }
+
 }
@@ -1,11 +1,14 @@
 package cz.martinbrom.slimybees.core.genetics.alleles;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -22,6 +25,7 @@ import cz.martinbrom.slimybees.core.BeeBuilder;
 import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
 import cz.martinbrom.slimybees.utils.StringUtils;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.collections.Pair;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
 
 @ParametersAreNonnullByDefault
 public class AlleleRegistry {
@@ -29,6 +33,27 @@ public class AlleleRegistry {
     private final Map<ChromosomeType, Map<String, ? extends Allele>> allelesByChromosomeType = new HashMap<>();
     private final Map<ChromosomeType, List<Pair<Double, ? extends Allele>>> sortedAllelesByChromosomeType = new HashMap<>();
 
+    // ids have to stay the same between restarts, because they are stored in the bee items
+    private final Config idConfig;
+    private final Map<String, Integer> assignedIds = new HashMap<>();
+    private final Map<ChromosomeType, Map<Integer, String>> assignedUids = new EnumMap<>(ChromosomeType.class);
+    private final Map<ChromosomeType, List<Allele>> allelesById = new EnumMap<>(ChromosomeType.class);
+    private final int[] nextIds = new int[ChromosomeType.CHROMOSOME_COUNT];
+
+    public AlleleRegistry() {
+        idConfig = new Config("data-storage/SlimyBees/allele-ids.yml");
+
+        for (String uid : idConfig.getKeys()) {
+            ChromosomeType type = getTypeFromUid(uid);
+            if (type != null) {
+                int id = idConfig.getInt(uid);
+                assignedIds.put(uid, id);
+                assignedUids.computeIfAbsent(type, k -> new HashMap<>()).put(id, uid);
+                nextIds[type.ordinal()] = Math.max(nextIds[type.ordinal()], id + 1);
+            }
+        }
+    }
+
     @Nullable
     public Allele get(ChromosomeType type, String uid) {
         Map<String, ? extends Allele> alleleMap = allelesByChromosomeType.get(type);
@@ -39,6 +64,133 @@ public class AlleleRegistry {
         return alleleMap.get(uid);
     }
 
+    /**
+     * Returns the {@link Allele} of given {@link ChromosomeType} with given id.
+     *
+     * @param type The {@link ChromosomeType} the {@link Allele} belongs to
+     * @param id The id assigned to the {@link Allele} during registration
+     * @return The {@link Allele} or null if no {@link Allele} has this id
+     */
+    @Nullable
+    public Allele getById(ChromosomeType type, int id) {
+        List<Allele> alleles = allelesById.get(type);
+        if (alleles == null || id < 0 || id >= alleles.size()) {
+            return null;
+        }
+
+        return alleles.get(id);
+    }
+
+    /**
+     * Returns the upper bound (exclusive) of ids assigned to {@link Allele}s of given {@link ChromosomeType}.
+     * Can be used to size arrays indexed by the {@link Allele} id.
+     *
+     * @param type The {@link ChromosomeType}
+     * @return The upper bound of assigned ids
+     */
+    public int getIdCount(ChromosomeType type) {
+        List<Allele> alleles = allelesById.get(type);
+        return alleles == null ? 0 : alleles.size();
+    }
+
+    /**
+     * Returns the ids of all currently registered {@link Allele}s of given {@link ChromosomeType}.
+     *
+     * @param type The {@link ChromosomeType}
+     * @return A new {@link BitSet} of registered ids
+     */
+    @Nonnull
+    public BitSet getRegisteredIds(ChromosomeType type) {
+        BitSet ids = new BitSet();
+        List<Allele> alleles = allelesById.get(type);
+        if (alleles != null) {
+            for (int i = 0; i < alleles.size(); i++) {
+                if (alleles.get(i) != null) {
+                    ids.set(i);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns the id assigned to an {@link Allele} with given uid.
+     * Unlike {@link Allele#getId()}, this also works for {@link Allele}s which are not registered
+     * right now but were registered in the past (e.g. by an addon which is disabled now).
+     *
+     * @param type The {@link ChromosomeType} the {@link Allele} belongs to
+     * @param uid The uid of the {@link Allele}
+     * @return The assigned id or -1 if no id has ever been assigned to given uid
+     */
+    public int getAssignedId(ChromosomeType type, String uid) {
+        Validate.notNull(type, "染色体类型不能为空!");
+        Validate.notNull(uid, "Uid 不能为空!");
+
+        Integer id = assignedIds.get(uid);
+        return id == null || getTypeFromUid(uid) != type ? -1 : id;
+    }
+
+    /**
+     * Returns the uid of an {@link Allele} with given assigned id.
+     * The counterpart of {@link #getAssignedId(ChromosomeType, String)}.
+     *
+     * @param type The {@link ChromosomeType} the {@link Allele} belongs to
+     * @param id The assigned id
+     * @return The uid or null if given id has never been assigned
+     */
+    @Nullable
+    public String getAssignedUid(ChromosomeType type, int id) {
+        Validate.notNull(type, "染色体类型不能为空!");
+
+        Map<Integer, String> uids = assignedUids.get(type);
+        return uids == null ? null : uids.get(id);
+    }
+
+    /**
+     * Returns the upper bound (exclusive) of ids ever assigned to {@link Allele}s of given {@link ChromosomeType},
+     * including the ids of {@link Allele}s which are not registered right now.
+     *
+     * @param type The {@link ChromosomeType}
+     * @return The upper bound of ever assigned ids
+     */
+    public int getAssignedIdCount(ChromosomeType type) {
+        Validate.notNull(type, "染色体类型不能为空!");
+
+        return nextIds[type.ordinal()];
+    }
+
+    /**
+     * Returns a hash of the uids assigned to ids of given {@link ChromosomeType} below given bound.
+     * Ids are only ever added, so data storing {@link Allele}s by their ids can keep the bound
+     * and the hash to find out whether the ids still stand for the same {@link Allele}s,
+     * e.g. after the file with assigned ids has been deleted.
+     *
+     * @param type The {@link ChromosomeType}
+     * @param count The upper bound (exclusive) of hashed ids
+     * @return The hash of the assigned uids
+     */
+    public int getAssignedIdsHash(ChromosomeType type, int count) {
+        Validate.notNull(type, "染色体类型不能为空!");
+
+        Map<Integer, String> uids = assignedUids.get(type);
+        int hash = 1;
+        for (int id = 0; id < count; id++) {
+            String uid = uids == null ? null : uids.get(id);
+            hash = 31 * hash + (uid == null ? 0 : uid.hashCode());
+        }
+
+        return hash;
+    }
+
+    /**
+     * Saves ids assigned to newly registered {@link Allele}s.
+     * Should be called once all {@link Allele}s are registered.
+     */
+    public void saveIds() {
+        idConfig.save();
+    }
+
     /**
      * Adds a new {@link Allele} to available alleles for given {@link ChromosomeType}.
      * DO NOT USE DIRECTLY FOR REGISTERING SPECIES! USE {@link BeeBuilder} INSTEAD!
@@ -60,6 +212,8 @@ public class AlleleRegistry {
         Map<String, T> alleleMap = (Map<String, T>) allelesByChromosomeType.computeIfAbsent(type, k -> new LinkedHashMap<>());
         alleleMap.put(allele.getUid(), allele);
         allelesByChromosomeType.put(type, alleleMap);
+
+        assignId(type, allele);
     }
 
     /**
@@ -151,6 +305,36 @@ public class AlleleRegistry {
         return Collections.emptyList();
     }
 
+    private void assignId(ChromosomeType type, Allele allele) {
+        String uid = allele.getUid();
+        Integer id = assignedIds.get(uid);
+        if (id == null) {
+            id = nextIds[type.ordinal()]++;
+            assignedIds.put(uid, id);
+            assignedUids.computeIfAbsent(type, k -> new HashMap<>()).put(id, uid);
+            idConfig.setValue(uid, id);
+        }
+
+        allele.setId(id);
+
+        List<Allele> alleles = allelesById.computeIfAbsent(type, k -> new ArrayList<>());
+        while (alleles.size() <= id) {
+            alleles.add(null);
+        }
+
+        alleles.set(id, allele);
+    }
+
+    @Nullable
+    private ChromosomeType getTypeFromUid(String uid) {
+        int index = uid.indexOf(':');
+        if (index < 0) {
+            return null;
+        }
+
+        return ChromosomeType.parse(uid.substring(0, index).toUpperCase(Locale.ROOT));
+    }
+
     private <T extends Allele> void registerAndSort(ChromosomeType type, T allele, double value) {
         register(type, allele);
 
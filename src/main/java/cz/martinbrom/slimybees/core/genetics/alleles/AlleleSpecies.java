@@ -17,6 +17,8 @@ public class AlleleSpecies extends Allele {
 
     private ItemStack princessItemStack;
     private ItemStack droneItemStack;
+    private ItemStack unknownPrincessItemStack;
+    private ItemStack unknownDroneItemStack;
     private List<ChanceItemStack> products;
 
     public AlleleSpecies(String uid, String name, boolean dominant) {
@@ -51,6 +53,34 @@ public class AlleleSpecies extends Allele {
         this.droneItemStack = droneItemStack;
     }
 
+    /**
+     * Returns the princess {@link ItemStack} with the "unknown" lore, used as a template for bred bees.
+     *
+     * @return The unknown princess {@link ItemStack} or null if it has not been set
+     */
+    @Nullable
+    public ItemStack getUnknownPrincessItemStack() {
+        return unknownPrincessItemStack;
+    }
+
+    public void setUnknownPrincessItemStack(ItemStack unknownPrincessItemStack) {
+        this.unknownPrincessItemStack = unknownPrincessItemStack;
+    }
+
+    /**
+     * Returns the drone {@link ItemStack} with the "unknown" lore, used as a template for bred bees.
+     *
+     * @return The unknown drone {@link ItemStack} or null if it has not been set
+     */
+    @Nullable
+    public ItemStack getUnknownDroneItemStack() {
+        return unknownDroneItemStack;
+    }
+
+    public void setUnknownDroneItemStack(ItemStack unknownDroneItemStack) {
+        this.unknownDroneItemStack = unknownDroneItemStack;
+    }
+
     @Nullable
     public List<ChanceItemStack> getProducts() {
         return products;
@@ -10,11 +10,12 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import org.apache.commons.lang.Validate;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
+import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 
 import cz.martinbrom.slimybees.core.recipe.AbstractRecipe;
-import cz.martinbrom.slimybees.core.recipe.GuaranteedRecipe;
-import cz.martinbrom.slimybees.core.recipe.RecipeMatchService;
+import cz.martinbrom.slimybees.core.recipe.RecipeIndex;
+import cz.martinbrom.slimybees.core.recipe.RecipeOutcome;
 import io.github.thebusybiscuit.slimefun4.api.items.ItemGroup;
 import io.github.thebusybiscuit.slimefun4.api.items.ItemState;
 import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItemStack;
@@ -22,6 +23,7 @@ import io.github.thebusybiscuit.slimefun4.api.recipes.RecipeType;
 import io.github.thebusybiscuit.slimefun4.core.attributes.EnergyNetComponent;
 import io.github.thebusybiscuit.slimefun4.core.networks.energy.EnergyNetComponentType;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.inventory.InvUtils;
+import io.github.thebusybiscuit.slimefun4.utils.SlimefunUtils;
 import io.github.thebusybiscuit.slimefun4.utils.itemstack.ItemStackWrapper;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenu;
 
@@ -29,10 +31,13 @@ import me.mrCookieSlime.Slimefun.api.inventory.BlockMenu;
 public abstract class AbstractElectricMachine extends AbstractMachine implements EnergyNetComponent {
 
     private final List<AbstractRecipe> recipes = new ArrayList<>();
+    // read by the ticker thread, replaced as a whole when a recipe is registered
+    private volatile RecipeIndex recipeIndex = new RecipeIndex(recipes);
 
     private int energyConsumedPerTick = -1;
     private int energyCapacity = -1;
     private int processingSpeed = -1;
+    private int batchSize = 1;
 
     protected AbstractElectricMachine(ItemGroup category, SlimefunItemStack item, RecipeType recipeType, ItemStack[] recipe) {
         super(category, item, recipeType, recipe);
@@ -40,7 +45,9 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
 
     @Override
     protected boolean checkCraftPreconditions(Block b) {
-        return takeCharge(b.getLocation());
+        // a batch takes as much energy as processing its recipes one by one in parallel
+        CustomCraftingOperation operation = getMachineProcessor().getOperation(b);
+        return takeCharge(b.getLocation(), operation == null ? 1 : operation.getRepetitions());
     }
 
     @Nonnull
@@ -78,6 +85,15 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
         return processingSpeed;
     }
 
+    /**
+     * This method returns the max number of repetitions of a recipe processed by a single operation.
+     *
+     * @return The batch size of this machine
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     /**
      * This sets the energy capacity for this machine.
      * This method <strong>must</strong> be called before registering the item
@@ -125,6 +141,24 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
         return this;
     }
 
+    /**
+     * This sets the max number of repetitions of a recipe processed by a single operation.
+     * The energy consumed per tick is multiplied by the number of repetitions actually processed,
+     * so the capacity must be able to hold energy for a full batch.
+     *
+     * @param batchSize The max number of repetitions, must be above zero
+     * @return This method will return the current instance of {@link AbstractElectricMachine}, so that can be chained.
+     */
+    public final AbstractElectricMachine setBatchSize(int batchSize) {
+        Validate.isTrue(batchSize > 0, "批量大小必须大于零!");
+        Validate.isTrue(energyConsumedPerTick > 0, "必须先设置能耗, 然后才能设置批量大小!");
+        Validate.isTrue((long) energyConsumedPerTick * batchSize <= energyCapacity,
+                "整批的能耗不能高于容量 (" + energyCapacity + ')');
+
+        this.batchSize = batchSize;
+        return this;
+    }
+
     /**
      * Adds a new {@link AbstractRecipe} to the machine
      *
@@ -133,6 +167,7 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
     public void registerRecipe(AbstractRecipe recipe) {
         recipe.setDuration(recipe.getDuration() / getSpeed());
         recipes.add(recipe);
+        recipeIndex = new RecipeIndex(recipes);
     }
 
     /**
@@ -142,16 +177,28 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
      * @return Whether charge was taken if its chargeable
      */
     protected boolean takeCharge(Location l) {
+        return takeCharge(l, 1);
+    }
+
+    /**
+     * This method will remove charge for given number of recipe repetitions from a location if it is chargeable.
+     *
+     * @param l location to try to remove charge from
+     * @param repetitions The number of repetitions processed at once
+     * @return Whether charge was taken if its chargeable
+     */
+    protected boolean takeCharge(Location l, int repetitions) {
         Validate.notNull(l, "无法尝试从空位置接管费用!");
 
         if (isChargeable()) {
             int charge = getCharge(l);
+            int consumption = getEnergyConsumption() * repetitions;
 
-            if (charge < getEnergyConsumption()) {
+            if (charge < consumption) {
                 return false;
             }
 
-            setCharge(l, charge - getEnergyConsumption());
+            setCharge(l, charge - consumption);
         }
 
         return true;
@@ -159,7 +206,7 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
 
     @Nullable
     @Override
-    protected GuaranteedRecipe findNextRecipe(BlockMenu menu) {
+    protected RecipeOutcome findNextRecipe(BlockMenu menu) {
         List<ItemStack> items = new ArrayList<>();
 
         for (int slot : getInputSlots()) {
@@ -170,14 +217,47 @@ public abstract class AbstractElectricMachine extends AbstractMachine implements
             }
         }
 
-        GuaranteedRecipe recipe = RecipeMatchService.match(items, recipes);
-        if (recipe == null || !InvUtils.fitAll(menu.toInventory(), recipe.getOutputs().toArray(new ItemStack[0]), getOutputSlots())) {
+        AbstractRecipe match = recipeIndex.find(items);
+        if (match == null) {
             return null;
         }
 
-        menu.toInventory().removeItem(recipe.getIngredientsCopy());
+        Inventory inv = menu.toInventory();
+        int repetitions = Math.min(getBatchSize(), countRepetitions(items, match));
+        RecipeOutcome outcome = match.sample(repetitions);
+
+        // outputs of a full batch might not fit, but a single recipe still could
+        if (!fitsOutputs(inv, outcome) && (repetitions == 1 || !fitsOutputs(inv, outcome = match.sample(1)))) {
+            return null;
+        }
+
+        inv.removeItem(outcome.getIngredientsCopy());
+
+        return outcome;
+    }
+
+    /**
+     * Returns how many times the given {@link AbstractRecipe} can be repeated with given items.
+     */
+    private int countRepetitions(List<ItemStack> items, AbstractRecipe recipe) {
+        int repetitions = Integer.MAX_VALUE;
+        for (ItemStack ingredient : recipe.getIngredients()) {
+            int amount = 0;
+            for (ItemStack item : items) {
+                if (SlimefunUtils.isItemSimilar(item, ingredient, true, false)) {
+                    amount += item.getAmount();
+                }
+            }
+
+            repetitions = Math.min(repetitions, amount / Math.max(1, ingredient.getAmount()));
+        }
+
+        // the recipe matched, so there is always enough for one
+        return Math.max(1, repetitions);
+    }
 
-        return recipe;
+    private boolean fitsOutputs(Inventory inv, RecipeOutcome outcome) {
+        return InvUtils.fitAll(inv, outcome.getOutputs().toArray(new ItemStack[0]), getOutputSlots());
     }
 
 }
@@ -1,6 +1,10 @@
 package cz.martinbrom.slimybees.core.machine;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -8,26 +12,48 @@ import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.inventory.ItemStack;
 
-import cz.martinbrom.slimybees.core.recipe.GuaranteedRecipe;
+import cz.martinbrom.slimybees.core.recipe.RecipeOutcome;
 import io.github.thebusybiscuit.slimefun4.api.items.ItemGroup;
 import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItemStack;
 import io.github.thebusybiscuit.slimefun4.api.recipes.RecipeType;
 import io.github.thebusybiscuit.slimefun4.core.attributes.MachineProcessHolder;
 import io.github.thebusybiscuit.slimefun4.core.attributes.RecipeDisplayItem;
 import io.github.thebusybiscuit.slimefun4.core.machines.MachineProcessor;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.blocks.BlockPosition;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.items.CustomItemStack;
 import me.mrCookieSlime.CSCoreLibPlugin.Configuration.Config;
+import me.mrCookieSlime.Slimefun.api.BlockStorage;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenu;
+import me.mrCookieSlime.Slimefun.api.inventory.DirtyChestMenu;
 
 // TODO: 16.06.21 Document that this is copied from the AContainer class
+/**
+ * An idle machine only looks for the next recipe when its inputs or outputs might have changed.
+ * Every machine keeps an input version, which is increased whenever an item in its menu is replaced
+ * (e.g. by cargo), when a player closes its menu and when an operation ends.
+ * While a player has the menu opened, the inputs are checked every tick,
+ * because items moved by the player directly are not reported.
+ * <p>
+ * Machines removed without being broken (e.g. by an explosion or a world edit) are not ticked anymore,
+ * so their state is periodically looked up and forgotten once the machine is gone from the {@link BlockStorage}.
+ */
 @ParametersAreNonnullByDefault
 public abstract class AbstractMachine extends AbstractTickingContainer implements MachineProcessHolder<CustomCraftingOperation>, RecipeDisplayItem {
 
+    // inputs can also be changed by other plugins without any notification
+    private static final int IDLE_RECHECK_TICKS = 20;
+    private static final int CLEANUP_TICKS = 1200;
+
     private final MachineProcessor<CustomCraftingOperation> processor = new MachineProcessor<>(this);
+    private final Map<BlockPosition, InputState> inputStates = new ConcurrentHashMap<>();
+
+    // only accessed by the ticker thread
+    private int ticksUntilCleanup = CLEANUP_TICKS;
 
     protected AbstractMachine(ItemGroup category, SlimefunItemStack item, RecipeType recipeType, ItemStack[] recipe) {
         super(category, item, recipeType, recipe);
@@ -42,7 +68,7 @@ public abstract class AbstractMachine extends AbstractTickingContainer implement
     }
 
     @Nullable
-    protected abstract GuaranteedRecipe findNextRecipe(BlockMenu menu);
+    protected abstract RecipeOutcome findNextRecipe(BlockMenu menu);
 
     @Nonnull
     protected abstract ItemStack getProgressBar();
@@ -65,6 +91,23 @@ public abstract class AbstractMachine extends AbstractTickingContainer implement
         }
     }
 
+    @Override
+    protected void onNewInstance(BlockMenu menu, Block b) {
+        super.onNewInstance(menu, b);
+
+        menu.addMenuCloseHandler(p -> markInputsChanged(b));
+    }
+
+    @Override
+    protected void onItemStackChange(DirtyChestMenu menu, int slot) {
+        super.onItemStackChange(menu, slot);
+
+        // a full output prevents the next operation from starting
+        if (menu instanceof BlockMenu && (contains(getInputSlots(), slot) || contains(getOutputSlots(), slot))) {
+            markInputsChanged(((BlockMenu) menu).getBlock());
+        }
+    }
+
     @Override
     protected void onBreak(BlockBreakEvent e, BlockMenu menu, Location l) {
         super.onBreak(e, menu, l);
@@ -73,6 +116,48 @@ public abstract class AbstractMachine extends AbstractTickingContainer implement
         menu.dropItems(l, getOutputSlots());
 
         processor.endOperation(e.getBlock());
+        inputStates.remove(new BlockPosition(e.getBlock()));
+    }
+
+    @Override
+    protected void uniqueTick() {
+        super.uniqueTick();
+
+        if (--ticksUntilCleanup <= 0) {
+            ticksUntilCleanup = CLEANUP_TICKS;
+            removeStaleStates();
+        }
+    }
+
+    /**
+     * Forgets the input states and operations of machines which are gone without being broken.
+     */
+    private void removeStaleStates() {
+        Iterator<BlockPosition> iterator = inputStates.keySet().iterator();
+        while (iterator.hasNext()) {
+            BlockPosition pos = iterator.next();
+            World world = pos.getWorld();
+            // machines of unloaded worlds might come back
+            if (world == null) {
+                continue;
+            }
+
+            Location l = new Location(world, pos.getX(), pos.getY(), pos.getZ());
+            // gone or replaced by a different Slimefun block
+            if (BlockStorage.check(l) != this) {
+                iterator.remove();
+                processor.endOperation(l);
+            }
+        }
+    }
+
+    /**
+     * Makes the machine at given {@link Block} look for the next recipe in its next tick.
+     *
+     * @param b The machine {@link Block}
+     */
+    protected void markInputsChanged(Block b) {
+        getInputState(b).version.incrementAndGet();
     }
 
     @Nonnull
@@ -102,10 +187,12 @@ public abstract class AbstractMachine extends AbstractTickingContainer implement
                     }
 
                     processor.endOperation(b);
+                    // the remaining inputs might be enough for another operation
+                    markInputsChanged(b);
                 }
             }
-        } else {
-            GuaranteedRecipe next = findNextRecipe(menu);
+        } else if (shouldFindNextRecipe(menu, b)) {
+            RecipeOutcome next = findNextRecipe(menu);
 
             if (next != null) {
                 processor.startOperation(b, new CustomCraftingOperation(next));
@@ -113,4 +200,47 @@ public abstract class AbstractMachine extends AbstractTickingContainer implement
         }
     }
 
+    private boolean shouldFindNextRecipe(BlockMenu menu, Block b) {
+        InputState state = getInputState(b);
+
+        // remembered before matching, so a change made in the meantime is seen in the next tick
+        long version = state.version.get();
+        if (version != state.checkedVersion || ++state.idleTicks >= IDLE_RECHECK_TICKS
+                || !menu.toInventory().getViewers().isEmpty()) {
+            state.checkedVersion = version;
+            state.idleTicks = 0;
+            return true;
+        }
+
+        return false;
+    }
+
+    @Nonnull
+    private InputState getInputState(Block b) {
+        return inputStates.computeIfAbsent(new BlockPosition(b), k -> new InputState());
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots) {
+            if (s == slot) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Tracks the changes of the inputs of a single machine.
+     */
+    private static final class InputState {
+
+        private final AtomicLong version = new AtomicLong();
+
+        // only accessed by the ticker thread
+        private long checkedVersion = -1;
+        private int idleTicks = 0;
+
+    }
+
 }
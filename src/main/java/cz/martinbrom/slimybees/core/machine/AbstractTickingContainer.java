@@ -3,6 +3,7 @@ package cz.martinbrom.slimybees.core.machine;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.bukkit.Location;
@@ -26,6 +27,7 @@ import me.mrCookieSlime.Slimefun.Objects.handlers.BlockTicker;
 import me.mrCookieSlime.Slimefun.api.BlockStorage;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenu;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenuPreset;
+import me.mrCookieSlime.Slimefun.api.inventory.DirtyChestMenu;
 import me.mrCookieSlime.Slimefun.api.item_transport.ItemTransportFlow;
 
 @ParametersAreNonnullByDefault
@@ -60,6 +62,13 @@ public abstract class AbstractTickingContainer extends SlimefunItem implements N
             public void newInstance(BlockMenu menu, Block b) {
                 onNewInstance(menu, b);
             }
+
+            @Nullable
+            @Override
+            public ItemStack onItemStackChange(DirtyChestMenu menu, int slot, @Nullable ItemStack previous, @Nullable ItemStack next) {
+                AbstractTickingContainer.this.onItemStackChange(menu, slot);
+                return next;
+            }
         };
     }
 
@@ -88,8 +97,17 @@ public abstract class AbstractTickingContainer extends SlimefunItem implements N
                 return AbstractTickingContainer.this.isSynchronized();
             }
 
+            @Override
+            public void uniqueTick() {
+                AbstractTickingContainer.this.uniqueTick();
+            }
+
             @Override
             public void tick(Block b, SlimefunItem item, Config data) {
+                if (!AbstractTickingContainer.this.shouldTick(b)) {
+                    return;
+                }
+
                 BlockMenu menu = BlockStorage.getInventory(b);
                 if (menu != null) {
                     AbstractTickingContainer.this.tick(menu, b, data);
@@ -108,10 +126,38 @@ public abstract class AbstractTickingContainer extends SlimefunItem implements N
 
     protected abstract void tick(BlockMenu menu, Block b, Config data);
 
+    /**
+     * Called once per Slimefun tick, before any of the blocks is ticked.
+     */
+    protected void uniqueTick() {
+        // do nothing, can be overridden
+    }
+
+    /**
+     * Allows skipping the tick of given {@link Block} before its {@link BlockMenu} is even loaded.
+     *
+     * @param b The ticked {@link Block}
+     * @return True if the {@link Block} should be ticked, false otherwise
+     */
+    protected boolean shouldTick(Block b) {
+        return true;
+    }
+
     protected void onNewInstance(BlockMenu menu, Block b) {
         // do nothing, can be overridden
     }
 
+    /**
+     * Called whenever an item in given menu is replaced through the menu, e.g. by cargo.
+     * Items changed by players directly in the opened inventory are not reported.
+     *
+     * @param menu The changed menu
+     * @param slot The changed slot
+     */
+    protected void onItemStackChange(DirtyChestMenu menu, int slot) {
+        // do nothing, can be overridden
+    }
+
     protected void onBreak(BlockBreakEvent e, BlockMenu menu, Location l) {
         // do nothing, can be overridden
     }
@@ -1,16 +1,16 @@
 package cz.martinbrom.slimybees.core.machine;
 
 import java.util.List;
-import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.apache.commons.lang.Validate;
-import org.bukkit.Location;
 import org.bukkit.inventory.ItemStack;
 
 import cz.martinbrom.slimybees.core.genetics.BreedingResultDTO;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleEffect;
 import io.github.thebusybiscuit.slimefun4.core.machines.MachineOperation;
 
 @ParametersAreNonnullByDefault
@@ -19,22 +19,39 @@ public class BeeBreedingOperation implements MachineOperation {
     private final ItemStack[] parents;
     private final BreedingResultDTO result;
     private final List<ItemStack> products;
-    private final Consumer<Location> effectFunction;
+    private final AlleleEffect.EffectFunction effectFunction;
+    private final int range;
 
+    // the last tick counted into the progress
+    private long lastTick;
     private int currentTicks = 0;
-
+    private int checkpointedTicks = 0;
+
+    /**
+     * Creates a new breeding operation.
+     *
+     * @param firstParent The first parent {@link ItemStack}
+     * @param secondParent The second parent {@link ItemStack}
+     * @param result The {@link BreedingResultDTO}
+     * @param products All products produced by the operation
+     * @param effectFunction The effect applied around the hive, or null if the bees have no effect
+     * @param range The range of the bees
+     * @param startTick The {@link HiveScheduler} tick from which the progress is counted
+     */
     public BeeBreedingOperation(ItemStack firstParent, ItemStack secondParent, BreedingResultDTO result,
-                                List<ItemStack> products, Consumer<Location> effectFunction) {
+                                List<ItemStack> products, @Nullable AlleleEffect.EffectFunction effectFunction,
+                                int range, long startTick) {
         Validate.notNull(firstParent, "第一个父项不能为空!");
         Validate.notNull(secondParent, "第二个父项不能为空!");
         Validate.notNull(result, "育种结果不能为空!");
         Validate.notNull(products, "产品不能为空!");
-        Validate.notNull(effectFunction, "效果函数不能为空!");
 
         this.parents = new ItemStack[] { firstParent, secondParent };
         this.result = result;
         this.products = products;
         this.effectFunction = effectFunction;
+        this.range = range;
+        this.lastTick = startTick;
     }
 
     @Nonnull
@@ -57,8 +74,52 @@ public class BeeBreedingOperation implements MachineOperation {
         return products;
     }
 
-    public void applyEffect(Location l) {
-        effectFunction.accept(l);
+    public boolean hasEffect() {
+        return effectFunction != null;
+    }
+
+    @Nullable
+    public AlleleEffect.EffectFunction getEffectFunction() {
+        return effectFunction;
+    }
+
+    public int getRange() {
+        return range;
+    }
+
+    /**
+     * Adds the ticks elapsed since the last update to the progress.
+     *
+     * @param currentTick The current {@link HiveScheduler} tick
+     */
+    public void updateProgress(long currentTick) {
+        if (currentTick > lastTick) {
+            currentTicks = (int) Math.min(getTotalTicks(), currentTicks + (currentTick - lastTick));
+            lastTick = currentTick;
+        }
+    }
+
+    /**
+     * Skips the ticks elapsed since the last update, e.g. because the hive has not been ticked in them.
+     * Only ticks after given tick are added to the progress.
+     *
+     * @param currentTick The current {@link HiveScheduler} tick
+     */
+    public void skipTicks(long currentTick) {
+        lastTick = Math.max(lastTick, currentTick);
+    }
+
+    /**
+     * Returns the progress stored with the last checkpoint of this operation.
+     *
+     * @return The checkpointed progress
+     */
+    public int getCheckpointedProgress() {
+        return checkpointedTicks;
+    }
+
+    public void setCheckpointedProgress(int checkpointedTicks) {
+        this.checkpointedTicks = checkpointedTicks;
     }
 
     @Override
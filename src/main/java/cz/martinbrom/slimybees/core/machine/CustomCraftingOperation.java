@@ -9,6 +9,7 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.inventory.ItemStack;
 
 import cz.martinbrom.slimybees.core.recipe.GuaranteedRecipe;
+import cz.martinbrom.slimybees.core.recipe.RecipeOutcome;
 import io.github.thebusybiscuit.slimefun4.core.machines.MachineOperation;
 
 @ParametersAreNonnullByDefault
@@ -18,13 +19,22 @@ public class CustomCraftingOperation implements MachineOperation {
     private final List<ItemStack> outputs;
 
     private final int totalTicks;
+    private final int repetitions;
     private int currentTicks = 0;
 
     public CustomCraftingOperation(GuaranteedRecipe recipe) {
         this(recipe.getIngredients(), recipe.getOutputs(), recipe.getDuration());
     }
 
+    public CustomCraftingOperation(RecipeOutcome outcome) {
+        this(outcome.getIngredients(), outcome.getOutputs(), outcome.getDuration(), outcome.getRepetitions());
+    }
+
     public CustomCraftingOperation(List<ItemStack> ingredients, List<ItemStack> outputs, int totalTicks) {
+        this(ingredients, outputs, totalTicks, 1);
+    }
+
+    public CustomCraftingOperation(List<ItemStack> ingredients, List<ItemStack> outputs, int totalTicks, int repetitions) {
         Validate.notNull(ingredients, "成分不能为空或为空!");
         Validate.notNull(outputs, "输出不能为空!");
         Validate.isTrue(totalTicks >= 0, "数量必须是正整数或零, received: " + totalTicks);
@@ -32,6 +42,7 @@ public class CustomCraftingOperation implements MachineOperation {
         this.ingredients = ingredients;
         this.outputs = outputs;
         this.totalTicks = totalTicks;
+        this.repetitions = repetitions;
     }
 
     @Override
@@ -50,6 +61,15 @@ public class CustomCraftingOperation implements MachineOperation {
         return outputs;
     }
 
+    /**
+     * Returns how many repetitions of a recipe are processed at once by this operation.
+     *
+     * @return The number of repetitions
+     */
+    public int getRepetitions() {
+        return repetitions;
+    }
+
     @Override
     public int getProgress() {
         return currentTicks;
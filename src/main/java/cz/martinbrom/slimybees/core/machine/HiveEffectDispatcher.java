@@ -0,0 +1,243 @@
+package cz.martinbrom.slimybees.core.machine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.util.BoundingBox;
+
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleEffect;
+import io.github.thebusybiscuit.slimefun4.libraries.dough.config.Config;
+
+/**
+ * This class applies hive effects on the main thread.
+ * <p>
+ * Hives submit their effects during the (async) Slimefun tick and all of them are applied
+ * by a single sync task in the next server tick. Effects of the same {@link AlleleEffect.EffectFunction}
+ * from hives in the same chunk are applied together, so an {@link AlleleEffect.EntityEffectFunction}
+ * only looks for nearby entities once for the whole group.
+ * <p>
+ * The time spent applying effects is limited by a per tick budget. Groups which don't fit
+ * into the budget are carried over to the next tick.
+ */
+@ParametersAreNonnullByDefault
+public class HiveEffectDispatcher {
+
+    private final Plugin plugin;
+    private final long budgetNanos;
+
+    private final Queue<PendingEffect> submittedEffects = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // only accessed from the main thread
+    private final Map<GroupKey, EffectGroup> groups = new LinkedHashMap<>();
+
+    public HiveEffectDispatcher(Plugin plugin, Config config) {
+        Validate.notNull(plugin, "插件不能为空!");
+        Validate.notNull(config, "配置不能为空!");
+
+        this.plugin = plugin;
+        this.budgetNanos = (long) (Math.max(0, config.getDouble("options.effect-budget-millis")) * 1_000_000);
+    }
+
+    /**
+     * Queues an effect of a hive at given {@link Location} to be applied in the next server tick.
+     * Can be called from any thread.
+     *
+     * @param l The hive {@link Location}
+     * @param function The {@link AlleleEffect.EffectFunction} to apply
+     * @param range The range of the bees in the hive
+     */
+    public void submit(Location l, AlleleEffect.EffectFunction function, int range) {
+        Validate.notNull(l, "无法在空位置应用效果!");
+        Validate.notNull(function, "无法应用空效果!");
+
+        submittedEffects.add(new PendingEffect(l, function, range));
+        scheduleRun();
+    }
+
+    private void scheduleRun() {
+        if (scheduled.compareAndSet(false, true)) {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTask(plugin, this::run);
+            } else {
+                scheduled.set(false);
+            }
+        }
+    }
+
+    private void run() {
+        // anything submitted from now on needs another run
+        scheduled.set(false);
+
+        PendingEffect effect;
+        while ((effect = submittedEffects.poll()) != null) {
+            GroupKey key = GroupKey.of(effect);
+            if (key != null) {
+                groups.computeIfAbsent(key, k -> new EffectGroup(k.function)).add(effect);
+            }
+        }
+
+        long start = System.nanoTime();
+        Iterator<EffectGroup> iterator = groups.values().iterator();
+        while (iterator.hasNext()) {
+            EffectGroup group = iterator.next();
+            iterator.remove();
+            group.apply();
+
+            // at least one group is applied in each tick, so the carried over effects always move forward
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        if (!groups.isEmpty()) {
+            scheduleRun();
+        }
+    }
+
+    private static class PendingEffect {
+
+        private final Location location;
+        private final AlleleEffect.EffectFunction function;
+        private final int range;
+
+        private PendingEffect(Location location, AlleleEffect.EffectFunction function, int range) {
+            this.location = location;
+            this.function = function;
+            this.range = range;
+        }
+
+    }
+
+    /**
+     * Identifies effects with the same function submitted by hives in the same chunk.
+     */
+    private static class GroupKey {
+
+        private final AlleleEffect.EffectFunction function;
+        private final UUID worldId;
+        private final int chunkX;
+        private final int chunkZ;
+
+        private GroupKey(AlleleEffect.EffectFunction function, UUID worldId, int chunkX, int chunkZ) {
+            this.function = function;
+            this.worldId = worldId;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        @Nullable
+        private static GroupKey of(PendingEffect effect) {
+            // the world might have been unloaded since the effect was submitted
+            Location l = effect.location;
+            if (!l.isWorldLoaded()) {
+                return null;
+            }
+
+            return new GroupKey(effect.function, l.getWorld().getUID(), l.getBlockX() >> 4, l.getBlockZ() >> 4);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            GroupKey that = (GroupKey) o;
+            return chunkX == that.chunkX && chunkZ == that.chunkZ
+                    && function.equals(that.function) && worldId.equals(that.worldId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(function, worldId, chunkX, chunkZ);
+        }
+
+    }
+
+    private static class EffectGroup {
+
+        private final AlleleEffect.EffectFunction function;
+        // the same hive can submit again while its effect is carried over
+        private final Map<Location, Integer> ranges = new LinkedHashMap<>();
+
+        private EffectGroup(AlleleEffect.EffectFunction function) {
+            this.function = function;
+        }
+
+        private void add(PendingEffect effect) {
+            ranges.put(effect.location, effect.range);
+        }
+
+        private void apply() {
+            if (function instanceof AlleleEffect.EntityEffectFunction) {
+                applyToEntities((AlleleEffect.EntityEffectFunction) function);
+            } else {
+                for (Map.Entry<Location, Integer> entry : ranges.entrySet()) {
+                    function.accept(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private void applyToEntities(AlleleEffect.EntityEffectFunction entityFunction) {
+            World world = null;
+            BoundingBox searchArea = null;
+            List<BoundingBox> areas = new ArrayList<>(ranges.size());
+            for (Map.Entry<Location, Integer> entry : ranges.entrySet()) {
+                BoundingBox area = AlleleEffect.EntityEffectFunction.getArea(entry.getKey(), entry.getValue());
+                areas.add(area);
+
+                if (searchArea == null) {
+                    world = entry.getKey().getWorld();
+                    searchArea = area.clone();
+                } else {
+                    searchArea.union(area);
+                }
+            }
+
+            if (world == null) {
+                return;
+            }
+
+            // one lookup for the whole chunk, each entity is affected at most once
+            for (Entity entity : world.getNearbyEntities(searchArea, n -> n instanceof LivingEntity && n.isValid())) {
+                if (isInAnyArea(entity.getBoundingBox(), areas)) {
+                    entityFunction.apply((LivingEntity) entity);
+                }
+            }
+        }
+
+        private boolean isInAnyArea(BoundingBox entityBox, List<BoundingBox> areas) {
+            for (BoundingBox area : areas) {
+                if (area.overlaps(entityBox)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+    }
+
+}
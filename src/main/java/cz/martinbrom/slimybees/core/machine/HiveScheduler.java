@@ -0,0 +1,190 @@
+package cz.martinbrom.slimybees.core.machine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import io.github.thebusybiscuit.slimefun4.libraries.dough.blocks.BlockPosition;
+import me.mrCookieSlime.Slimefun.api.BlockStorage;
+
+/**
+ * This class decides which hives need to do some work in the current tick.
+ * Each hive is either "due" (it will be ticked until it schedules its next wake up)
+ * or sleeping in a timing wheel bucket until its wake up tick.
+ * <p>
+ * Ticks are counted by {@link #advance()}, which has to be called exactly once per Slimefun tick,
+ * before any hive is ticked.
+ * <p>
+ * Hives in chunks which are not loaded are not ticked, so they are forgotten instead of becoming due,
+ * the hive is woken up again once its chunk loads. Hives which are gone from the {@link BlockStorage}
+ * without being removed (e.g. by an explosion or a world edit) are forgotten once they should wake up.
+ * The same happens to due hives which have not been ticked for a whole wheel rotation.
+ */
+@ParametersAreNonnullByDefault
+public class HiveScheduler {
+
+    // has to be a power of two
+    private static final int WHEEL_SIZE = 256;
+
+    private final List<Set<BlockPosition>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Map<BlockPosition, Long> wakeTicks = new HashMap<>();
+    // due hives mapped to the last tick in which they were due
+    private final Map<BlockPosition, Long> dueHives = new ConcurrentHashMap<>();
+
+    private volatile long currentTick = 0;
+
+    public HiveScheduler() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new HashSet<>());
+        }
+    }
+
+    /**
+     * Moves to the next tick and marks every hive that should wake up in it as due.
+     */
+    public synchronized void advance() {
+        long tick = currentTick + 1;
+        currentTick = tick;
+
+        Iterator<BlockPosition> iterator = getBucket(tick).iterator();
+        while (iterator.hasNext()) {
+            BlockPosition pos = iterator.next();
+
+            // hives scheduled more than one wheel rotation ahead stay in the bucket
+            if (wakeTicks.get(pos) <= tick) {
+                iterator.remove();
+                wakeTicks.remove(pos);
+
+                // hives in unloaded chunks are woken up when the chunk loads
+                if (isChunkLoaded(pos) && exists(pos)) {
+                    dueHives.put(pos, tick);
+                }
+            }
+        }
+
+        if ((tick & (WHEEL_SIZE - 1)) == 0) {
+            removeStaleHives(tick);
+        }
+    }
+
+    /**
+     * Forgets due hives which have not been ticked for a whole wheel rotation, e.g. because they are gone.
+     * Those which are still there are put back to sleep and checked again in the next rotation.
+     */
+    private void removeStaleHives(long tick) {
+        Iterator<Map.Entry<BlockPosition, Long>> iterator = dueHives.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BlockPosition, Long> entry = iterator.next();
+            if (entry.getValue() <= tick - WHEEL_SIZE) {
+                iterator.remove();
+
+                BlockPosition pos = entry.getKey();
+                if (isChunkLoaded(pos) && exists(pos)) {
+                    wakeTicks.put(pos, tick + WHEEL_SIZE);
+                    getBucket(tick + WHEEL_SIZE).add(pos);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the hive at given {@link Block} should be ticked.
+     * This is called for every hive in every tick, so it does not allocate anything
+     * unless there are some due hives.
+     *
+     * @param b The hive {@link Block}
+     * @return True if the hive should be ticked, false otherwise
+     */
+    public boolean isDue(Block b) {
+        if (dueHives.isEmpty()) {
+            return false;
+        }
+
+        // remembers that the hive is still being ticked
+        return dueHives.replace(new BlockPosition(b), currentTick) != null;
+    }
+
+    /**
+     * Puts the hive at given {@link Block} to sleep for given number of ticks.
+     *
+     * @param b The hive {@link Block}
+     * @param ticks Number of ticks to sleep for, at least one
+     */
+    public synchronized void schedule(Block b, int ticks) {
+        Validate.notNull(b, "无法调度空方块!");
+
+        BlockPosition pos = new BlockPosition(b);
+        cancel(pos);
+
+        long wakeTick = currentTick + Math.max(1, ticks);
+        wakeTicks.put(pos, wakeTick);
+        getBucket(wakeTick).add(pos);
+    }
+
+    /**
+     * Makes the hive at given {@link Block} due, so it is ticked in the next tick.
+     * Used for new hives and when something changes in the hive menu.
+     *
+     * @param b The hive {@link Block}
+     */
+    public synchronized void wake(Block b) {
+        Validate.notNull(b, "无法唤醒空方块!");
+
+        BlockPosition pos = new BlockPosition(b);
+        cancel(pos);
+        dueHives.put(pos, currentTick);
+    }
+
+    /**
+     * Forgets the hive at given {@link Block}.
+     *
+     * @param b The hive {@link Block}
+     */
+    public synchronized void remove(Block b) {
+        Validate.notNull(b, "无法移除空方块!");
+
+        cancel(new BlockPosition(b));
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    private void cancel(BlockPosition pos) {
+        dueHives.remove(pos);
+
+        Long wakeTick = wakeTicks.remove(pos);
+        if (wakeTick != null) {
+            getBucket(wakeTick).remove(pos);
+        }
+    }
+
+    private boolean exists(BlockPosition pos) {
+        World world = pos.getWorld();
+        return world != null && BlockStorage.hasBlockInfo(new Location(world, pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    private boolean isChunkLoaded(BlockPosition pos) {
+        World world = pos.getWorld();
+        return world != null && world.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4);
+    }
+
+    @Nonnull
+    private Set<BlockPosition> getBucket(long tick) {
+        return wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+    }
+
+}
@@ -1,5 +1,6 @@
 package cz.martinbrom.slimybees.core.recipe;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -9,6 +10,8 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import org.apache.commons.lang.Validate;
 import org.bukkit.inventory.ItemStack;
 
+import cz.martinbrom.slimybees.utils.ItemStackUtils;
+
 @ParametersAreNonnullByDefault
 public abstract class AbstractRecipe {
 
@@ -45,6 +48,44 @@ public abstract class AbstractRecipe {
         return array;
     }
 
+    /**
+     * Samples the result of processing given number of repetitions of this recipe at once.
+     * Ingredients are multiplied by the number of repetitions, outputs are merged into as few stacks as possible.
+     *
+     * @param repetitions The number of repetitions, at least one
+     * @return The {@link RecipeOutcome} of all repetitions
+     */
+    @Nonnull
+    public abstract RecipeOutcome sample(int repetitions);
+
+    /**
+     * Creates a {@link RecipeOutcome} of given number of repetitions.
+     *
+     * @param items The output items
+     * @param amounts The total amount of each output item (in the same order)
+     * @param repetitions The number of repetitions
+     * @return The {@link RecipeOutcome}
+     */
+    @Nonnull
+    protected RecipeOutcome createOutcome(List<ItemStack> items, int[] amounts, int repetitions) {
+        List<ItemStack> batchIngredients = repetitions == 1 ? ingredients : getBatchIngredients(repetitions);
+        return new RecipeOutcome(this, batchIngredients, ItemStackUtils.createStacks(items, amounts), repetitions);
+    }
+
+    @Nonnull
+    protected List<ItemStack> getBatchIngredients(int repetitions) {
+        Validate.isTrue(repetitions > 0, "重复次数必须大于零!");
+
+        List<ItemStack> result = new ArrayList<>(ingredients.size());
+        for (ItemStack ingredient : ingredients) {
+            ItemStack copy = ingredient.clone();
+            copy.setAmount(ingredient.getAmount() * repetitions);
+            result.add(copy);
+        }
+
+        return result;
+    }
+
     public boolean isInstant() {
         return duration <= 0;
     }
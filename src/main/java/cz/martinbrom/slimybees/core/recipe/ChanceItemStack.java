@@ -7,6 +7,8 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import org.apache.commons.lang.Validate;
 import org.bukkit.inventory.ItemStack;
 
+import cz.martinbrom.slimybees.utils.RandomUtils;
+
 @ParametersAreNonnullByDefault
 public class ChanceItemStack {
 
@@ -33,6 +35,8 @@ public class ChanceItemStack {
      * Performs a random "roll" to get (or not get) a result item.
      * Modifier increases the chance to get the item for numbers greater than 1
      * and lowers the chance for numbers smaller than 1.
+     * A single roll can only get one item, chances over 100 % are capped,
+     * use {@link #getCount(double, int)} to get the extra items.
      *
      * Example:
      * chance = 0.3 (30 %)
@@ -43,10 +47,32 @@ public class ChanceItemStack {
      * @return True, if the dice roll results in getting the item
      */
     public boolean shouldGet(double modifier) {
-        // TODO: 30.06.21 If modifier * chance > 1, get more?
         return ThreadLocalRandom.current().nextDouble() < modifier * chance;
     }
 
+    /**
+     * Performs given number of random "rolls" at once and returns how many items were gotten.
+     * The final chance is computed the same way as in {@link #shouldGet(double)}.
+     * Every whole 100 % of the final chance guarantees one item per roll,
+     * the rest is the chance to get one more item.
+     *
+     * Example:
+     * chance = 0.3 (30 %)
+     * modifier = 5
+     * final chance = 1.5 (150 %)
+     * each roll gets 1 item and has a 50 % chance to get another one
+     *
+     * @param modifier Ratio that modifies the chance of getting the item
+     * @param rolls Number of rolls
+     * @return Number of items gotten (not counting the amount of the {@link ItemStack})
+     */
+    public int getCount(double modifier, int rolls) {
+        double finalChance = Math.max(0, modifier * chance);
+        int guaranteed = (int) finalChance;
+
+        return guaranteed * rolls + RandomUtils.nextBinomial(ThreadLocalRandom.current(), rolls, finalChance - guaranteed);
+    }
+
     public boolean shouldGet() {
         return ThreadLocalRandom.current().nextDouble() < chance;
     }
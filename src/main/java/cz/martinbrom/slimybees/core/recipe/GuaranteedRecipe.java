@@ -13,6 +13,8 @@ import org.bukkit.inventory.ItemStack;
 public class GuaranteedRecipe extends AbstractRecipe {
 
     private final List<ItemStack> outputs = new ArrayList<>();
+    // a single repetition always has the same outcome, created when it is first needed
+    private volatile RecipeOutcome singleOutcome;
 
     public GuaranteedRecipe(ItemStack input) {
         super(input);
@@ -26,6 +28,7 @@ public class GuaranteedRecipe extends AbstractRecipe {
         Validate.notNull(item, "无法将空项目添加到 GuaranteedRecipe!");
 
         outputs.add(item);
+        singleOutcome = null;
         return this;
     }
 
@@ -54,6 +57,34 @@ public class GuaranteedRecipe extends AbstractRecipe {
         return outputs;
     }
 
+    @Nonnull
+    @Override
+    public RecipeOutcome sample(int repetitions) {
+        Validate.isTrue(repetitions > 0, "重复次数必须大于零!");
+
+        if (repetitions == 1) {
+            RecipeOutcome outcome = singleOutcome;
+            if (outcome == null) {
+                outcome = createOutcome(1);
+                singleOutcome = outcome;
+            }
+
+            return outcome;
+        }
+
+        return createOutcome(repetitions);
+    }
+
+    @Nonnull
+    private RecipeOutcome createOutcome(int repetitions) {
+        int[] amounts = new int[outputs.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = outputs.get(i).getAmount() * repetitions;
+        }
+
+        return createOutcome(outputs, amounts, repetitions);
+    }
+
     @Nonnull
     @Override
     protected AbstractRecipe copy(AbstractRecipe recipe) {
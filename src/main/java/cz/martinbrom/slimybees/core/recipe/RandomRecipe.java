@@ -12,7 +12,12 @@ import org.bukkit.inventory.ItemStack;
 @ParametersAreNonnullByDefault
 public class RandomRecipe extends AbstractRecipe {
 
+    // single repetitions are sampled from cached outcomes, which needs 2^n of them for n outputs
+    private static final int MAX_CACHED_OUTPUTS = 8;
+
     private final List<ChanceItemStack> outputs;
+    // outcomes of a single repetition, indexed by a bit mask of the gotten outputs
+    private volatile RecipeOutcome[] singleOutcomes;
 
     public RandomRecipe(ItemStack ingredient) {
         super(ingredient);
@@ -32,6 +37,7 @@ public class RandomRecipe extends AbstractRecipe {
 
     public RandomRecipe addOutput(ChanceItemStack item) {
         outputs.add(item);
+        singleOutcomes = null;
         return this;
     }
 
@@ -61,6 +67,72 @@ public class RandomRecipe extends AbstractRecipe {
         return recipe;
     }
 
+    /**
+     * {@inheritDoc}
+     * Each output is rolled for all repetitions at once, see {@link ChanceItemStack#getCount(double, int)}.
+     * A single repetition has only a few possible outcomes, so it returns one of the cached instances
+     * and does not allocate anything.
+     */
+    @Nonnull
+    @Override
+    public RecipeOutcome sample(int repetitions) {
+        Validate.isTrue(repetitions > 0, "重复次数必须大于零!");
+
+        if (repetitions == 1 && outputs.size() <= MAX_CACHED_OUTPUTS) {
+            return sampleSingle();
+        }
+
+        int[] amounts = new int[outputs.size()];
+        for (int i = 0; i < amounts.length; i++) {
+            ChanceItemStack output = outputs.get(i);
+            amounts[i] = output.getCount(1, repetitions) * output.getItem().getAmount();
+        }
+
+        return createOutcome(getOutputItems(), amounts, repetitions);
+    }
+
+    @Nonnull
+    private RecipeOutcome sampleSingle() {
+        int mask = 0;
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).shouldGet()) {
+                mask |= 1 << i;
+            }
+        }
+
+        RecipeOutcome[] outcomes = singleOutcomes;
+        if (outcomes == null) {
+            outcomes = new RecipeOutcome[1 << outputs.size()];
+            singleOutcomes = outcomes;
+        }
+
+        // outcomes are immutable, creating one twice from different threads does no harm
+        RecipeOutcome outcome = outcomes[mask];
+        if (outcome == null) {
+            int[] amounts = new int[outputs.size()];
+            for (int i = 0; i < amounts.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    amounts[i] = outputs.get(i).getItem().getAmount();
+                }
+            }
+
+            outcome = createOutcome(getOutputItems(), amounts, 1);
+            outcomes[mask] = outcome;
+        }
+
+        return outcome;
+    }
+
+    @Nonnull
+    private List<ItemStack> getOutputItems() {
+        List<ItemStack> items = new ArrayList<>(outputs.size());
+        for (ChanceItemStack output : outputs) {
+            items.add(output.getItem());
+        }
+
+        return items;
+    }
+
     @Nonnull
     @Override
     protected AbstractRecipe copy(AbstractRecipe recipe) {
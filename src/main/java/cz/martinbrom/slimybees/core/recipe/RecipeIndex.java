@@ -0,0 +1,174 @@
+package cz.martinbrom.slimybees.core.recipe;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItem;
+import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItemStack;
+
+/**
+ * An immutable index of {@link AbstractRecipe}s by their ingredients.
+ * <p>
+ * Two items can only be similar if they have the same {@link Material}, so the recipes are grouped
+ * by the materials of their ingredients and Slimefun ingredients are further grouped by their item ids.
+ * Matching looks up the candidate recipes of every input item and only those are compared
+ * by {@link RecipeMatchService}, so inputs which don't match any recipe are rejected
+ * without a single item comparison. The result is the same as {@link RecipeMatchService#match},
+ * i.e. the first matching recipe in the original order.
+ */
+@ParametersAreNonnullByDefault
+public class RecipeIndex {
+
+    private static final int[] NO_RECIPES = new int[0];
+
+    private final AbstractRecipe[] recipes;
+    private final Map<Material, Bucket> buckets = new EnumMap<>(Material.class);
+
+    public RecipeIndex(List<AbstractRecipe> recipes) {
+        Validate.notNull(recipes, "索引的配方不能为空!");
+
+        this.recipes = recipes.toArray(new AbstractRecipe[0]);
+
+        Map<Material, BucketBuilder> builders = new EnumMap<>(Material.class);
+        for (int i = 0; i < this.recipes.length; i++) {
+            for (ItemStack ingredient : this.recipes[i].getIngredients()) {
+                builders.computeIfAbsent(ingredient.getType(), k -> new BucketBuilder()).add(ingredient, i);
+            }
+        }
+
+        for (Map.Entry<Material, BucketBuilder> entry : builders.entrySet()) {
+            buckets.put(entry.getKey(), entry.getValue().build());
+        }
+    }
+
+    /**
+     * Finds the first {@link AbstractRecipe} whose ingredients are all contained in given items.
+     *
+     * @param items The input items, can contain nulls
+     * @return The matching recipe as a {@link GuaranteedRecipe} or null if no recipe matches
+     */
+    @Nullable
+    public GuaranteedRecipe match(@Nullable List<ItemStack> items) {
+        AbstractRecipe recipe = find(items);
+        return recipe == null ? null : RecipeMatchService.toGuaranteed(recipe);
+    }
+
+    /**
+     * Finds the first {@link AbstractRecipe} whose ingredients are all contained in given items.
+     * Unlike {@link #match(List)}, the recipe is returned as it is, so it can be used for a batch.
+     *
+     * @param items The input items, can contain nulls
+     * @return The matching {@link AbstractRecipe} or null if no recipe matches
+     */
+    @Nullable
+    public AbstractRecipe find(@Nullable List<ItemStack> items) {
+        if (items == null || items.isEmpty()) {
+            return null;
+        }
+
+        int best = recipes.length;
+        for (ItemStack item : items) {
+            if (item == null) {
+                continue;
+            }
+
+            Bucket bucket = buckets.get(item.getType());
+            if (bucket == null) {
+                continue;
+            }
+
+            best = matchCandidates(items, bucket.plainRecipes, best);
+            if (!bucket.slimefunRecipes.isEmpty()) {
+                SlimefunItem sfItem = SlimefunItem.getByItem(item);
+                if (sfItem != null) {
+                    best = matchCandidates(items, bucket.slimefunRecipes.getOrDefault(sfItem.getId(), NO_RECIPES), best);
+                } else {
+                    // items created before they were Slimefun items are only similar by their meta
+                    for (int[] candidates : bucket.slimefunRecipes.values()) {
+                        best = matchCandidates(items, candidates, best);
+                    }
+                }
+            }
+        }
+
+        return best < recipes.length ? recipes[best] : null;
+    }
+
+    /**
+     * Checks candidate recipes which come before the best match found so far.
+     *
+     * @return The index of the best match
+     */
+    private int matchCandidates(List<ItemStack> items, int[] candidates, int best) {
+        // candidates are sorted, so everything after the best match can be skipped
+        for (int i = 0; i < candidates.length && candidates[i] < best; i++) {
+            if (RecipeMatchService.matches(items, recipes[candidates[i]])) {
+                return candidates[i];
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Indexes of recipes with an ingredient of a single {@link Material}.
+     */
+    private static final class Bucket {
+
+        private final int[] plainRecipes;
+        private final Map<String, int[]> slimefunRecipes;
+
+        private Bucket(int[] plainRecipes, Map<String, int[]> slimefunRecipes) {
+            this.plainRecipes = plainRecipes;
+            this.slimefunRecipes = slimefunRecipes;
+        }
+
+    }
+
+    private static final class BucketBuilder {
+
+        private final List<Integer> plainRecipes = new ArrayList<>();
+        private final Map<String, List<Integer>> slimefunRecipes = new HashMap<>();
+
+        private void add(ItemStack ingredient, int recipe) {
+            List<Integer> list = ingredient instanceof SlimefunItemStack
+                    ? slimefunRecipes.computeIfAbsent(((SlimefunItemStack) ingredient).getItemId(), k -> new ArrayList<>())
+                    : plainRecipes;
+
+            // recipes are added in order, a recipe with the same ingredient twice is kept once
+            if (list.isEmpty() || list.get(list.size() - 1) != recipe) {
+                list.add(recipe);
+            }
+        }
+
+        private Bucket build() {
+            Map<String, int[]> slimefunArrays = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : slimefunRecipes.entrySet()) {
+                slimefunArrays.put(entry.getKey(), toArray(entry.getValue()));
+            }
+
+            return new Bucket(toArray(plainRecipes), slimefunArrays);
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+
+            return array;
+        }
+
+    }
+
+}
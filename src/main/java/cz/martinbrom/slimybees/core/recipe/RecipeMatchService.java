@@ -4,6 +4,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -12,6 +13,11 @@ import org.bukkit.inventory.ItemStack;
 
 import io.github.thebusybiscuit.slimefun4.utils.SlimefunUtils;
 
+/**
+ * Matches machine inputs against recipes by comparing every ingredient with every input.
+ * Machines matching the same recipes over and over should use a {@link RecipeIndex},
+ * which only compares recipes that can match at all.
+ */
 @ParametersAreNonnullByDefault
 public class RecipeMatchService {
 
@@ -23,29 +29,62 @@ public class RecipeMatchService {
             return null;
         }
 
-        Set<Integer> found = new HashSet<>();
         for (AbstractRecipe recipe : recipes) {
-            for (ItemStack input : recipe.getIngredients()) {
-                for (int i = 0; i < items.size(); i++) {
-                    if (SlimefunUtils.isItemSimilar(items.get(i), input, true)) {
-                        found.add(i);
-                        break;
-                    }
-                }
+            if (matches(items, recipe)) {
+                return toGuaranteed(recipe);
             }
+        }
 
-            if (found.size() == recipe.getIngredients().size()) {
-                // make sure we return a GuaranteedRecipe so devs down the line don't run into
-                // issues with calling get() multiple times and getting a different recipe each time
-                return recipe instanceof RandomRecipe
-                    ? ((RandomRecipe) recipe).get()
-                    : ((GuaranteedRecipe) recipe);
+        return null;
+    }
+
+    /**
+     * Checks whether every ingredient of given {@link AbstractRecipe} is similar to a different input item.
+     *
+     * @param items The input items, can contain nulls
+     * @param recipe The {@link AbstractRecipe} to check
+     * @return True if the inputs contain all ingredients, false otherwise
+     */
+    static boolean matches(List<ItemStack> items, AbstractRecipe recipe) {
+        if (items.size() > Long.SIZE) {
+            return matchesMany(items, recipe);
+        }
+
+        // indexes of the input items used by the ingredients
+        long found = 0;
+        for (ItemStack input : recipe.getIngredients()) {
+            for (int i = 0; i < items.size(); i++) {
+                if (SlimefunUtils.isItemSimilar(items.get(i), input, true)) {
+                    found |= 1L << i;
+                    break;
+                }
             }
+        }
+
+        return Long.bitCount(found) == recipe.getIngredients().size();
+    }
 
-            found.clear();
+    private static boolean matchesMany(List<ItemStack> items, AbstractRecipe recipe) {
+        Set<Integer> found = new HashSet<>();
+        for (ItemStack input : recipe.getIngredients()) {
+            for (int i = 0; i < items.size(); i++) {
+                if (SlimefunUtils.isItemSimilar(items.get(i), input, true)) {
+                    found.add(i);
+                    break;
+                }
+            }
         }
 
-        return null;
+        return found.size() == recipe.getIngredients().size();
+    }
+
+    @Nonnull
+    static GuaranteedRecipe toGuaranteed(AbstractRecipe recipe) {
+        // make sure we return a GuaranteedRecipe so devs down the line don't run into
+        // issues with calling get() multiple times and getting a different recipe each time
+        return recipe instanceof RandomRecipe
+                ? ((RandomRecipe) recipe).get()
+                : ((GuaranteedRecipe) recipe);
     }
 
 }
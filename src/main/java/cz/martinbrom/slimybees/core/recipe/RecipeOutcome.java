@@ -0,0 +1,94 @@
+package cz.martinbrom.slimybees.core.recipe;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The sampled result of processing an {@link AbstractRecipe} a number of times at once,
+ * see {@link AbstractRecipe#sample(int)}.
+ * <p>
+ * Outcomes are immutable and shared, a recipe returns the same instance for every single
+ * repetition with the same result. The {@link ItemStack}s must therefore never be modified,
+ * copy them before handing them over to an inventory.
+ */
+@ParametersAreNonnullByDefault
+public final class RecipeOutcome {
+
+    private final AbstractRecipe recipe;
+    private final List<ItemStack> ingredients;
+    private final List<ItemStack> outputs;
+    private final int repetitions;
+
+    RecipeOutcome(AbstractRecipe recipe, List<ItemStack> ingredients, List<ItemStack> outputs, int repetitions) {
+        Validate.notNull(recipe, "配方不能为空!");
+        Validate.notNull(ingredients, "配方成分不能为空!");
+        Validate.notNull(outputs, "产出不能为空!");
+        Validate.isTrue(repetitions > 0, "重复次数必须大于零!");
+
+        this.recipe = recipe;
+        this.ingredients = Collections.unmodifiableList(ingredients);
+        this.outputs = Collections.unmodifiableList(outputs);
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Returns the ingredients of all repetitions.
+     *
+     * @return Unmodifiable list of the ingredients
+     */
+    @Nonnull
+    public List<ItemStack> getIngredients() {
+        return ingredients;
+    }
+
+    /**
+     * Returns copies of the ingredients of all repetitions, e.g. for {@link org.bukkit.inventory.Inventory#removeItem}
+     * which changes the amounts of given {@link ItemStack}s.
+     *
+     * @return Copies of the ingredients
+     */
+    @Nonnull
+    public ItemStack[] getIngredientsCopy() {
+        ItemStack[] array = new ItemStack[ingredients.size()];
+        for (int i = 0; i < ingredients.size(); i++) {
+            array[i] = ingredients.get(i).clone();
+        }
+
+        return array;
+    }
+
+    /**
+     * Returns the outputs of all repetitions, identical items are merged into as few stacks as possible.
+     *
+     * @return Unmodifiable list of the outputs
+     */
+    @Nonnull
+    public List<ItemStack> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Returns how many repetitions of the recipe this outcome consists of.
+     *
+     * @return The number of repetitions
+     */
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    /**
+     * Returns the duration of the recipe, all repetitions are processed at once.
+     *
+     * @return The duration in ticks
+     */
+    public int getDuration() {
+        return recipe.getDuration();
+    }
+
+}
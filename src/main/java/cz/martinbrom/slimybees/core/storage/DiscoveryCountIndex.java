@@ -0,0 +1,187 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import cz.martinbrom.slimybees.utils.FileUtils;
+
+/**
+ * This class keeps the number of discovered species of every player with a profile file,
+ * so they don't have to be read from every single profile file on each startup.
+ * <p>
+ * The index is updated whenever a profile is saved and written to a YAML file from time to time.
+ * Profile files modified after the index was written (e.g. because the server crashed in the meantime)
+ * are read again when the index is loaded. The whole index is only rebuilt when its file is missing.
+ */
+@ParametersAreNonnullByDefault
+public class DiscoveryCountIndex {
+
+    private static final String WRITTEN_AT_KEY = "written-at";
+    private static final String COUNTS_KEY = "counts";
+    // file systems store modification times with a limited precision
+    private static final long MODIFICATION_TIME_TOLERANCE_MILLIS = 2000;
+
+    private final Path indexFile;
+    private final Logger logger;
+    private final Map<UUID, Integer> counts = new ConcurrentHashMap<>();
+
+    // the index is only written once it contains every profile file
+    private volatile boolean loaded = false;
+    private volatile boolean changed = false;
+
+    public DiscoveryCountIndex(Path indexFile, Logger logger) {
+        Validate.notNull(indexFile, "索引文件不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+
+        this.indexFile = indexFile;
+        this.logger = logger;
+    }
+
+    /**
+     * Remembers the number of species discovered by a player whose profile has just been saved.
+     *
+     * @param uuid The {@link UUID} of the player
+     * @param count The number of discovered species
+     */
+    public void update(UUID uuid, int count) {
+        Validate.notNull(uuid, "玩家 UUID 不能为空!");
+
+        counts.put(uuid, count);
+        changed = true;
+    }
+
+    /**
+     * Loads the index and reads the profile files it does not contain or which are newer than the index.
+     * Counts updated since the start of the server are kept.
+     *
+     * @param files Profile files mapped to the {@link UUID}s of their players
+     * @param reader Reads the number of discovered species from a profile file
+     * @return Player {@link UUID}s mapped to the number of species they discovered
+     */
+    @Nonnull
+    public Map<UUID, Integer> load(Map<UUID, File> files, CountReader reader) {
+        Validate.notNull(files, "档案文件不能为空!");
+        Validate.notNull(reader, "读取器不能为空!");
+
+        long writtenAt = Long.MIN_VALUE;
+        Map<UUID, Integer> indexed = new HashMap<>();
+        YamlConfiguration yaml = readIndex();
+        if (yaml != null) {
+            writtenAt = yaml.getLong(WRITTEN_AT_KEY) - MODIFICATION_TIME_TOLERANCE_MILLIS;
+            ConfigurationSection section = yaml.getConfigurationSection(COUNTS_KEY);
+            if (section != null) {
+                for (String key : section.getKeys(false)) {
+                    try {
+                        indexed.put(UUID.fromString(key), section.getInt(key));
+                    } catch (IllegalArgumentException e) {
+                        logger.log(Level.WARNING, "Skipping an invalid player UUID in the discovery count index: " + key);
+                    }
+                }
+            }
+        }
+
+        int read = 0;
+        for (Map.Entry<UUID, File> entry : files.entrySet()) {
+            UUID uuid = entry.getKey();
+            File file = entry.getValue();
+            if (counts.containsKey(uuid)) {
+                continue;
+            }
+
+            Integer count = indexed.get(uuid);
+            if (count == null || file.lastModified() >= writtenAt) {
+                try {
+                    count = reader.read(file);
+                    read++;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Could not read the profile file " + file + ": " + e.getMessage());
+                    continue;
+                }
+            }
+
+            // saved in the meantime
+            counts.putIfAbsent(uuid, count);
+        }
+
+        loaded = true;
+        changed |= read > 0 || indexed.size() != files.size();
+        if (read > 0) {
+            logger.log(Level.INFO, "Read {0} profile files missing in the discovery count index", read);
+        }
+
+        save();
+        return new HashMap<>(counts);
+    }
+
+    /**
+     * Writes the index if it changed since the last write.
+     * Does nothing until the index has been loaded, it would miss the players who have not been saved since.
+     */
+    public synchronized void save() {
+        if (!loaded || !changed) {
+            return;
+        }
+
+        // profiles saved while the index is written are newer than the index, so they are read again next time
+        changed = false;
+        long writtenAt = System.currentTimeMillis();
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set(WRITTEN_AT_KEY, writtenAt);
+        for (Map.Entry<UUID, Integer> entry : counts.entrySet()) {
+            yaml.set(COUNTS_KEY + "." + entry.getKey(), entry.getValue());
+        }
+
+        try {
+            FileUtils.writeAtomically(indexFile, yaml.saveToString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            changed = true;
+            logger.log(Level.WARNING, "Could not write the discovery count index " + indexFile, e);
+        }
+    }
+
+    @Nullable
+    private YamlConfiguration readIndex() {
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+
+        try {
+            YamlConfiguration yaml = new YamlConfiguration();
+            yaml.loadFromString(new String(Files.readAllBytes(indexFile), StandardCharsets.UTF_8));
+            return yaml;
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.log(Level.WARNING, "Could not read the discovery count index " + indexFile + ", rebuilding it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the number of discovered species from a profile file.
+     */
+    @FunctionalInterface
+    public interface CountReader {
+
+        int read(File file) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,289 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import cz.martinbrom.slimybees.utils.FileUtils;
+
+/**
+ * This class persists global discoveries (species uid and the name of the player who discovered it first).
+ * <p>
+ * The state is stored in a YAML snapshot file and an append-only journal next to it.
+ * Every new discovery only appends a single line to the journal, records appended at the same time
+ * are written and synced to the disk together by a background thread.
+ * Once the journal grows long enough (and when shutting down), it is compacted into a new snapshot.
+ */
+@ParametersAreNonnullByDefault
+public class DiscoveryJournal {
+
+    private static final int COMPACTION_THRESHOLD = 256;
+    private static final char SEPARATOR = '\t';
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final Logger logger;
+    private final ExecutorService executor;
+
+    // everything ever discovered, including species which are not registered right now
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final Queue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // only accessed from the journal thread
+    private FileChannel journalChannel;
+    private int journalRecords = 0;
+
+    public DiscoveryJournal(Path snapshotFile, Path journalFile, Logger logger) {
+        Validate.notNull(snapshotFile, "快照文件不能为空!");
+        Validate.notNull(journalFile, "日志文件不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.logger = logger;
+
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("SlimyBees Discovery Journal")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Rebuilds the global discoveries from the snapshot and the journal.
+     * Has to be called once, before anything is appended.
+     *
+     * @return Species uids mapped to the names of players who discovered them first
+     */
+    @Nonnull
+    public Map<String, String> load() {
+        YamlConfiguration snapshot = YamlConfiguration.loadConfiguration(snapshotFile.toFile());
+        for (String uid : snapshot.getKeys(false)) {
+            String playerName = snapshot.getString(uid);
+            if (playerName != null) {
+                entries.put(uid, playerName);
+            }
+        }
+
+        if (Files.exists(journalFile)) {
+            try {
+                byte[] data = Files.readAllBytes(journalFile);
+
+                // the last line is incomplete if the server crashed while writing it
+                int length = data.length;
+                while (length > 0 && data[length - 1] != '\n') {
+                    length--;
+                }
+
+                String journal = new String(data, 0, length, StandardCharsets.UTF_8);
+                int start = 0;
+                int end;
+                while ((end = journal.indexOf('\n', start)) >= 0) {
+                    replay(journal.substring(start, end));
+                    start = end + 1;
+                    journalRecords++;
+                }
+
+                // otherwise the next record would be appended to the incomplete line and lost with it
+                if (length < data.length && !truncateJournal(length)) {
+                    // a snapshot clears the whole journal
+                    submit(this::writeSnapshot);
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not read the discovery journal " + journalFile, e);
+            }
+        }
+
+        return new HashMap<>(entries);
+    }
+
+    /**
+     * Records a new global discovery. The record is written to the disk asynchronously.
+     * Can be called from any thread.
+     *
+     * @param uid The uid of the discovered species
+     * @param playerName The name of the player who discovered it
+     */
+    public void append(String uid, String playerName) {
+        Validate.notNull(uid, "发现的物种 uid 不能为空!");
+        Validate.notNull(playerName, "玩家名称不能为空!");
+
+        if (entries.putIfAbsent(uid, playerName) == null) {
+            pendingRecords.add(uid + SEPARATOR + playerName + '\n');
+            if (flushScheduled.compareAndSet(false, true)) {
+                submit(this::flush);
+            }
+        }
+    }
+
+    /**
+     * Writes all records into a new snapshot and clears the journal, in the background.
+     * Does nothing if the journal is empty.
+     */
+    public void compact() {
+        submit(() -> {
+            flush();
+
+            if (journalRecords > 0) {
+                writeSnapshot();
+            }
+        });
+    }
+
+    /**
+     * Writes all pending records, compacts the journal and stops the background thread.
+     * Waits at most the given time for it to finish.
+     *
+     * @param timeout Max time to wait
+     * @param unit The {@link TimeUnit} of the timeout
+     */
+    public void close(long timeout, TimeUnit unit) {
+        compact();
+        submit(this::closeChannel);
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(timeout, unit)) {
+                logger.log(Level.SEVERE, "Could not save global discoveries in time!");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.log(Level.WARNING, "The discovery journal is closed, a global discovery will not be saved!");
+        }
+    }
+
+    private void replay(String record) {
+        int index = record.indexOf(SEPARATOR);
+        if (index > 0 && index < record.length() - 1) {
+            // the first discovery wins, same as when the record was appended
+            entries.putIfAbsent(record.substring(0, index), record.substring(index + 1));
+        }
+    }
+
+    private void flush() {
+        // records added from now on need another flush
+        flushScheduled.set(false);
+
+        StringBuilder builder = new StringBuilder();
+        int count = 0;
+        String record;
+        while ((record = pendingRecords.poll()) != null) {
+            builder.append(record);
+            count++;
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        try {
+            FileChannel channel = getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            // one sync for the whole group of records
+            channel.force(false);
+            journalRecords += count;
+        } catch (IOException e) {
+            // the records are still in memory, so they will be a part of the next snapshot
+            logger.log(Level.SEVERE, "Could not write to the discovery journal " + journalFile, e);
+            journalRecords += count;
+        }
+
+        if (journalRecords >= COMPACTION_THRESHOLD) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() {
+        YamlConfiguration snapshot = new YamlConfiguration();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            snapshot.set(entry.getKey(), entry.getValue());
+        }
+
+        try {
+            FileUtils.writeAtomically(snapshotFile, snapshot.saveToString().getBytes(StandardCharsets.UTF_8));
+
+            // every record written so far is a part of the snapshot now
+            getChannel().truncate(0);
+            journalRecords = 0;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not compact the discovery journal into " + snapshotFile, e);
+        }
+    }
+
+    private boolean truncateJournal(long size) {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+            channel.force(false);
+            logger.log(Level.WARNING, "Removed an incomplete record from the end of the discovery journal {0}", journalFile);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not remove an incomplete record from the discovery journal " + journalFile, e);
+            return false;
+        }
+    }
+
+    @Nonnull
+    private FileChannel getChannel() throws IOException {
+        if (journalChannel == null) {
+            Path parent = journalFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            journalChannel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        return journalChannel;
+    }
+
+    private void closeChannel() {
+        FileChannel channel = journalChannel;
+        journalChannel = null;
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close the discovery journal " + journalFile, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import cz.martinbrom.slimybees.core.BeeDiscoveryService;
+import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
+
+/**
+ * A storage backend for everything SlimyBees knows about players,
+ * i.e. {@link SlimyBeesPlayerProfile}s and global discoveries of the {@link BeeDiscoveryService}.
+ * <p>
+ * Profiles are loaded from any thread, but only ever written by the {@link cz.martinbrom.slimybees.core.ProfileSaveService}.
+ */
+@ParametersAreNonnullByDefault
+public interface PlayerDataStorage {
+
+    /**
+     * Prepares the storage for use, e.g. creates missing files or tables.
+     * Called once on startup, after all alleles are registered.
+     *
+     * @throws IOException If the storage cannot be used
+     */
+    void open() throws IOException;
+
+    /**
+     * Loads the data of the profile of a player with given {@link UUID}.
+     *
+     * @param uuid The {@link UUID} of the player
+     * @return The {@link ProfileDataDTO}, empty if the player has no saved data
+     * @throws IOException If the data cannot be read
+     */
+    @Nonnull
+    ProfileDataDTO loadProfile(UUID uuid) throws IOException;
+
+    /**
+     * Writes given profile {@link SlimyBeesPlayerProfile.Snapshot}s.
+     * A snapshot older than the last written snapshot of the same profile must be skipped,
+     * see {@link SlimyBeesPlayerProfile.Snapshot#writeIfNewer}.
+     *
+     * @param snapshots The {@link SlimyBeesPlayerProfile.Snapshot}s to write
+     * @throws IOException If any of the snapshots cannot be written
+     */
+    void saveProfiles(List<SlimyBeesPlayerProfile.Snapshot> snapshots) throws IOException;
+
+    /**
+     * Loads the number of discovered species of every player with saved data.
+     * Might take a while, so it should not be called from the main thread.
+     *
+     * @return Player {@link UUID}s mapped to the number of species they discovered
+     * @throws IOException If the data cannot be read
+     */
+    @Nonnull
+    Map<UUID, Integer> loadDiscoveryCounts() throws IOException;
+
+    /**
+     * Returns whether {@link #saveProfiles(List)} can be called from multiple threads at once.
+     *
+     * @return True if the storage supports concurrent writes, false otherwise
+     */
+    boolean supportsConcurrentWrites();
+
+    /**
+     * Loads all global discoveries.
+     *
+     * @return Species uids mapped to the names of players who discovered them first
+     */
+    @Nonnull
+    Map<String, String> loadGlobalDiscoveries();
+
+    /**
+     * Stores a new global discovery, without blocking the caller.
+     * Only the first discovery of each species is kept.
+     *
+     * @param uid The uid of the discovered species
+     * @param playerName The name of the player who discovered it
+     */
+    void addGlobalDiscovery(String uid, String playerName);
+
+    /**
+     * Returns whether other servers might change the data in this storage while it is open.
+     *
+     * @return True if the storage is shared by multiple servers, false otherwise
+     */
+    boolean isShared();
+
+    /**
+     * Returns the changes made by other servers since the last call.
+     * A storage which is not shared never has any.
+     * Should not be called from the main thread.
+     *
+     * @return The {@link StorageChangesDTO}
+     * @throws IOException If the changes cannot be read
+     */
+    @Nonnull
+    StorageChangesDTO pollChanges() throws IOException;
+
+    /**
+     * Gives the storage a chance to do some periodic maintenance in the background.
+     */
+    void compact();
+
+    /**
+     * Finishes all pending work and releases all resources.
+     * Waits at most given time for it to finish.
+     *
+     * @param timeout Max time to wait
+     * @param unit The {@link TimeUnit} of the timeout
+     */
+    void close(long timeout, TimeUnit unit);
+
+}
@@ -0,0 +1,104 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+
+/**
+ * Persisted data of a single {@link SlimyBeesPlayerProfile}.
+ */
+@ParametersAreNonnullByDefault
+public class ProfileDataDTO {
+
+    private final BitSet discoveredIds;
+    private final Set<String> unknownBees;
+    private final long storageVersion;
+
+    /**
+     * Creates the profile data.
+     *
+     * @param discoveredIds Ids of discovered species, see {@link AlleleRegistry#getAssignedId}
+     * @param unknownBees Uids of discovered species without an assigned id
+     */
+    public ProfileDataDTO(BitSet discoveredIds, Set<String> unknownBees) {
+        this(discoveredIds, unknownBees, 0);
+    }
+
+    /**
+     * Creates the profile data.
+     *
+     * @param discoveredIds Ids of discovered species, see {@link AlleleRegistry#getAssignedId}
+     * @param unknownBees Uids of discovered species without an assigned id
+     * @param storageVersion Version of the stored profile, increased by every write of a shared {@link PlayerDataStorage}
+     */
+    public ProfileDataDTO(BitSet discoveredIds, Set<String> unknownBees, long storageVersion) {
+        Validate.notNull(discoveredIds, "发现的 id 不能为空!");
+        Validate.notNull(unknownBees, "未知蜜蜂不能为空!");
+
+        this.discoveredIds = discoveredIds;
+        this.unknownBees = unknownBees;
+        this.storageVersion = storageVersion;
+    }
+
+    /**
+     * Creates data of a profile without any discoveries.
+     *
+     * @return Empty {@link ProfileDataDTO}
+     */
+    @Nonnull
+    public static ProfileDataDTO empty() {
+        return new ProfileDataDTO(new BitSet(), new HashSet<>());
+    }
+
+    /**
+     * Creates data containing the discoveries of both this and the other profile data.
+     *
+     * @param other The other {@link ProfileDataDTO}
+     * @return The union of both, neither of them is changed
+     */
+    @Nonnull
+    public ProfileDataDTO union(ProfileDataDTO other) {
+        Validate.notNull(other, "无法与空档案数据合并!");
+
+        BitSet ids = (BitSet) discoveredIds.clone();
+        ids.or(other.discoveredIds);
+
+        Set<String> bees = new HashSet<>(unknownBees);
+        bees.addAll(other.unknownBees);
+
+        return new ProfileDataDTO(ids, bees, Math.max(storageVersion, other.storageVersion));
+    }
+
+    @Nonnull
+    public BitSet getDiscoveredIds() {
+        return discoveredIds;
+    }
+
+    @Nonnull
+    public Set<String> getUnknownBees() {
+        return Collections.unmodifiableSet(unknownBees);
+    }
+
+    /**
+     * Returns the version of the stored profile, always 0 for storages which are not shared.
+     *
+     * @return The storage version
+     */
+    public long getStorageVersion() {
+        return storageVersion;
+    }
+
+    public int getDiscoveredCount() {
+        return discoveredIds.cardinality() + unknownBees.size();
+    }
+
+}
@@ -0,0 +1,779 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+
+/**
+ * A {@link PlayerDataStorage} keeping all player data in a single SQLite database file.
+ * The SQLite driver is shipped with the server, so no extra dependency is needed.
+ * <p>
+ * Species are stored by their uid, one row per discovered species of a player.
+ * Both the species and the number of discoveries of each player are indexed,
+ * so questions like "who discovered X" or "who discovered the most species" are cheap to answer.
+ * <p>
+ * Existing YAML data is migrated when the database is first opened. Global discoveries are migrated right away,
+ * profile files are migrated in batches in the background. Until that is finished,
+ * profiles missing in the database are read from their YAML files.
+ * The YAML files are left untouched, so they can serve as a backup.
+ * Every server using a shared database migrates its own YAML data and merges it with the profiles
+ * which are already in the database.
+ * <p>
+ * A shared database can be used by multiple servers on the same machine at once, SQLite locks the file for writes.
+ * Every write of a shared database is also recorded in a change log with an increasing version,
+ * so each server can find out which of its cached data has been changed by others, see {@link #pollChanges()}.
+ * Each profile has a version increased by every write. A profile which has been written by another server
+ * since it was loaded is never replaced, the saved discoveries are merged into it instead.
+ */
+@ParametersAreNonnullByDefault
+public class SqlitePlayerDataStorage implements PlayerDataStorage {
+
+    private static final String DISCOVERIES_MIGRATED_KEY = "yaml_discoveries_migrated";
+    private static final String PROFILES_MIGRATED_KEY = "yaml_profiles_migrated";
+    private static final int MIGRATION_BATCH_SIZE = 500;
+    private static final String PROFILE_CHANGE = "profile";
+    private static final String DISCOVERY_CHANGE = "discovery";
+    // marks changes every server has to reload, including the one which made them
+    private static final String MERGED_CHANGE_SERVER = "merged";
+    // every server polls way more often than this
+    private static final long CHANGE_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Path databaseFile;
+    private final AlleleRegistry alleleRegistry;
+    private final YamlPlayerDataStorage yamlStorage;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final boolean shared;
+    // identifies changes made by this server
+    private final String serverId = UUID.randomUUID().toString();
+    // the data folder migrated to the database, every server of a shared database has its own
+    private final String migrationSource;
+
+    // a single connection is shared by all threads, every access has to be synchronized on this
+    private Connection connection;
+    private volatile boolean migratingProfiles = false;
+    // the last change seen by this server
+    private long changeVersion = 0;
+
+    public SqlitePlayerDataStorage(Path databaseFile, AlleleRegistry alleleRegistry,
+                                   YamlPlayerDataStorage yamlStorage, Logger logger, boolean shared) {
+        Validate.notNull(databaseFile, "数据库文件不能为空!");
+        Validate.notNull(alleleRegistry, "等位基因注册表不能为空!");
+        Validate.notNull(yamlStorage, "YAML 存储不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+
+        this.databaseFile = databaseFile;
+        this.alleleRegistry = alleleRegistry;
+        this.yamlStorage = yamlStorage;
+        this.logger = logger;
+        this.shared = shared;
+        migrationSource = yamlStorage.getProfileFolder().getAbsoluteFile().getParent();
+
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("SlimyBees Database")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        try {
+            Path parent = databaseFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            Class.forName("org.sqlite.JDBC");
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+
+            try (Statement statement = connection.createStatement()) {
+                // readers don't block the writer and the other way around
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+
+                statement.execute("CREATE TABLE IF NOT EXISTS profiles ("
+                        + "uuid TEXT PRIMARY KEY, "
+                        + "discovered_count INTEGER NOT NULL, "
+                        + "updated_at INTEGER NOT NULL, "
+                        + "version INTEGER NOT NULL DEFAULT 0)");
+                addVersionColumn(statement);
+                statement.execute("CREATE INDEX IF NOT EXISTS profiles_discovered_count ON profiles (discovered_count)");
+                statement.execute("CREATE TABLE IF NOT EXISTS profile_species ("
+                        + "uuid TEXT NOT NULL, "
+                        + "species TEXT NOT NULL, "
+                        + "PRIMARY KEY (uuid, species)) WITHOUT ROWID");
+                statement.execute("CREATE INDEX IF NOT EXISTS profile_species_species ON profile_species (species)");
+                statement.execute("CREATE TABLE IF NOT EXISTS global_discoveries ("
+                        + "species TEXT PRIMARY KEY, "
+                        + "player_name TEXT NOT NULL)");
+                statement.execute("CREATE TABLE IF NOT EXISTS meta ("
+                        + "key TEXT PRIMARY KEY, "
+                        + "value TEXT NOT NULL)");
+
+                if (shared) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS changes ("
+                            + "version INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "server TEXT NOT NULL, "
+                            + "kind TEXT NOT NULL, "
+                            + "key TEXT NOT NULL, "
+                            + "created_at INTEGER NOT NULL)");
+
+                    // everything older is already part of the data loaded on startup
+                    try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM changes")) {
+                        changeVersion = result.next() ? result.getLong(1) : 0;
+                    }
+                }
+            }
+
+            if (getMeta(getMigrationKey(DISCOVERIES_MIGRATED_KEY)) == null) {
+                migrateGlobalDiscoveries();
+            }
+
+            migratingProfiles = getMeta(getMigrationKey(PROFILES_MIGRATED_KEY)) == null;
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("无法打开数据库 " + databaseFile, e);
+        }
+
+        // the journal is not needed anymore
+        yamlStorage.close(10, TimeUnit.SECONDS);
+
+        if (migratingProfiles) {
+            submit(this::migrateProfiles);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public ProfileDataDTO loadProfile(UUID uuid) throws IOException {
+        Validate.notNull(uuid, "无法为空 UUID 加载档案!");
+
+        ProfileDataDTO data = selectProfile(uuid);
+        if (!migratingProfiles) {
+            return data != null ? data : ProfileDataDTO.empty();
+        }
+
+        // the profile might not have been migrated yet
+        ProfileDataDTO yamlData = yamlStorage.loadProfile(uuid);
+        if (data == null) {
+            return yamlData;
+        }
+
+        // a profile saved by another server does not contain the discoveries made on this one yet
+        return shared ? data.union(yamlData) : data;
+    }
+
+    @Nullable
+    private synchronized ProfileDataDTO selectProfile(UUID uuid) throws IOException {
+        String key = uuid.toString();
+
+        try (PreparedStatement profileStatement = connection.prepareStatement("SELECT version FROM profiles WHERE uuid = ?");
+             PreparedStatement speciesStatement = connection.prepareStatement("SELECT species FROM profile_species WHERE uuid = ?")) {
+            long version;
+            profileStatement.setString(1, key);
+            try (ResultSet result = profileStatement.executeQuery()) {
+                if (!result.next()) {
+                    return null;
+                }
+
+                version = result.getLong(1);
+            }
+
+            BitSet discoveredIds = new BitSet();
+            Set<String> unknownBees = new HashSet<>();
+
+            speciesStatement.setString(1, key);
+            try (ResultSet result = speciesStatement.executeQuery()) {
+                while (result.next()) {
+                    String uid = result.getString(1);
+                    int id = alleleRegistry.getAssignedId(ChromosomeType.SPECIES, uid);
+                    if (id < 0) {
+                        unknownBees.add(uid);
+                    } else {
+                        discoveredIds.set(id);
+                    }
+                }
+            }
+
+            return new ProfileDataDTO(discoveredIds, unknownBees, version);
+        } catch (SQLException e) {
+            throw new IOException("无法加载玩家档案: " + uuid, e);
+        }
+    }
+
+    @Override
+    public synchronized void saveProfiles(List<SlimyBeesPlayerProfile.Snapshot> snapshots) throws IOException {
+        Validate.notNull(snapshots, "保存的快照不能为空!");
+
+        // only the latest snapshot of each profile is worth writing
+        Map<UUID, SlimyBeesPlayerProfile.Snapshot> latest = new LinkedHashMap<>();
+        for (SlimyBeesPlayerProfile.Snapshot snapshot : snapshots) {
+            if (!snapshot.isOutdated()) {
+                latest.merge(snapshot.getUuid(), snapshot, (a, b) -> a.getVersion() > b.getVersion() ? a : b);
+            }
+        }
+
+        if (latest.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<SlimyBeesPlayerProfile.Snapshot, Long> writtenVersions = new HashMap<>();
+        try {
+            connection.setAutoCommit(false);
+
+            // the species of a profile written by another server in the meantime are kept,
+            // so the stored count has to be computed after all species are inserted
+            try (PreparedStatement versionStatement = connection.prepareStatement("SELECT version FROM profiles WHERE uuid = ?");
+                 PreparedStatement deleteStatement = connection.prepareStatement("DELETE FROM profile_species WHERE uuid = ?");
+                 PreparedStatement speciesStatement = connection.prepareStatement("INSERT OR IGNORE INTO profile_species (uuid, species) VALUES (?, ?)");
+                 PreparedStatement profileStatement = connection.prepareStatement("INSERT OR REPLACE INTO profiles (uuid, discovered_count, updated_at, version) "
+                         + "VALUES (?, (SELECT COUNT(*) FROM profile_species WHERE uuid = ?), ?, ?)");
+                 PreparedStatement changeStatement = prepareChangeStatement()) {
+                for (SlimyBeesPlayerProfile.Snapshot snapshot : latest.values()) {
+                    String key = snapshot.getUuid().toString();
+                    long storedVersion = selectVersion(versionStatement, key);
+
+                    // a write of a shared database is only ever based on the discoveries of this server,
+                    // blindly replacing a profile another server wrote since would lose its discoveries
+                    boolean merged = shared && storedVersion >= 0 && storedVersion != snapshot.getStorageVersion();
+                    if (!merged) {
+                        deleteStatement.setString(1, key);
+                        deleteStatement.addBatch();
+                    }
+
+                    for (String uid : getDiscoveredUids(snapshot)) {
+                        speciesStatement.setString(1, key);
+                        speciesStatement.setString(2, uid);
+                        speciesStatement.addBatch();
+                    }
+
+                    long newVersion = Math.max(storedVersion, 0) + 1;
+                    profileStatement.setString(1, key);
+                    profileStatement.setString(2, key);
+                    profileStatement.setLong(3, now);
+                    profileStatement.setLong(4, newVersion);
+                    profileStatement.addBatch();
+                    writtenVersions.put(snapshot, newVersion);
+
+                    // this server does not know the merged discoveries either
+                    if (changeStatement != null) {
+                        addChange(changeStatement, merged ? MERGED_CHANGE_SERVER : serverId, PROFILE_CHANGE, key, now);
+                    }
+                }
+
+                deleteStatement.executeBatch();
+                speciesStatement.executeBatch();
+                profileStatement.executeBatch();
+                if (changeStatement != null) {
+                    changeStatement.executeBatch();
+                }
+            }
+
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("无法保存 " + latest.size() + " 个玩家档案", e);
+        } finally {
+            resetAutoCommit();
+        }
+
+        for (Map.Entry<SlimyBeesPlayerProfile.Snapshot, Long> entry : writtenVersions.entrySet()) {
+            entry.getKey().markWritten(entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the version of a stored profile, see {@link ProfileDataDTO#getStorageVersion()}.
+     *
+     * @return The version or -1 if the profile is not stored
+     */
+    private long selectVersion(PreparedStatement statement, String key) throws SQLException {
+        statement.setString(1, key);
+        try (ResultSet result = statement.executeQuery()) {
+            return result.next() ? result.getLong(1) : -1;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Map<UUID, Integer> loadDiscoveryCounts() throws IOException {
+        Map<UUID, Integer> counts = new HashMap<>();
+        synchronized (this) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT uuid, discovered_count FROM profiles")) {
+                while (result.next()) {
+                    counts.put(UUID.fromString(result.getString(1)), result.getInt(2));
+                }
+            } catch (SQLException | IllegalArgumentException e) {
+                throw new IOException("无法从数据库加载发现数量", e);
+            }
+        }
+
+        // profiles which have not been migrated yet
+        if (migratingProfiles) {
+            for (Map.Entry<UUID, Integer> entry : yamlStorage.loadDiscoveryCounts().entrySet()) {
+                counts.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return counts;
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        // there is only a single connection
+        return false;
+    }
+
+    @Nonnull
+    @Override
+    public synchronized Map<String, String> loadGlobalDiscoveries() {
+        Map<String, String> entries = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT species, player_name FROM global_discoveries")) {
+            while (result.next()) {
+                entries.put(result.getString(1), result.getString(2));
+            }
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Could not load global discoveries from the database", e);
+        }
+
+        return entries;
+    }
+
+    @Override
+    public void addGlobalDiscovery(String uid, String playerName) {
+        Validate.notNull(uid, "发现的物种 uid 不能为空!");
+        Validate.notNull(playerName, "玩家名称不能为空!");
+
+        submit(() -> {
+            synchronized (this) {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "INSERT OR IGNORE INTO global_discoveries (species, player_name) VALUES (?, ?)");
+                     PreparedStatement changeStatement = prepareChangeStatement()) {
+                    statement.setString(1, uid);
+                    statement.setString(2, playerName);
+
+                    // another server might have been faster, then there is nothing to announce
+                    if (statement.executeUpdate() > 0 && changeStatement != null) {
+                        addChange(changeStatement, serverId, DISCOVERY_CHANGE, uid, System.currentTimeMillis());
+                        changeStatement.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    logger.log(Level.SEVERE, "Could not save the global discovery of " + uid, e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Changed profiles are returned with their current number of discoveries,
+     * global discoveries with the name of the player who actually discovered them first.
+     */
+    @Nonnull
+    @Override
+    public synchronized StorageChangesDTO pollChanges() throws IOException {
+        if (!shared || connection == null) {
+            return StorageChangesDTO.empty();
+        }
+
+        Map<UUID, Integer> changedProfiles = new HashMap<>();
+        Map<String, String> globalDiscoveries = new HashMap<>();
+        long lastVersion = changeVersion;
+
+        try (PreparedStatement statement = connection.prepareStatement("SELECT c.version, c.server, c.kind, c.key, "
+                + "p.discovered_count, g.player_name FROM changes c "
+                + "LEFT JOIN profiles p ON c.kind = '" + PROFILE_CHANGE + "' AND p.uuid = c.key "
+                + "LEFT JOIN global_discoveries g ON c.kind = '" + DISCOVERY_CHANGE + "' AND g.species = c.key "
+                + "WHERE c.version > ? ORDER BY c.version")) {
+            statement.setLong(1, changeVersion);
+            try (ResultSet result = statement.executeQuery()) {
+                while (result.next()) {
+                    lastVersion = result.getLong(1);
+                    if (serverId.equals(result.getString(2))) {
+                        continue;
+                    }
+
+                    String key = result.getString(4);
+                    if (PROFILE_CHANGE.equals(result.getString(3))) {
+                        changedProfiles.put(UUID.fromString(key), result.getInt(5));
+                    } else if (DISCOVERY_CHANGE.equals(result.getString(3)) && result.getString(6) != null) {
+                        globalDiscoveries.put(key, result.getString(6));
+                    }
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("无法从共享数据库加载更改", e);
+        }
+
+        changeVersion = lastVersion;
+        return new StorageChangesDTO(changedProfiles, globalDiscoveries);
+    }
+
+    @Override
+    public void compact() {
+        // merges the write-ahead log back into the database file
+        submit(() -> {
+            synchronized (this) {
+                try (Statement statement = connection.createStatement()) {
+                    if (shared) {
+                        statement.execute("DELETE FROM changes WHERE created_at < "
+                                + (System.currentTimeMillis() - CHANGE_RETENTION_MILLIS));
+                    }
+
+                    statement.execute("PRAGMA wal_checkpoint(PASSIVE)");
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Could not checkpoint the database", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close(long timeout, TimeUnit unit) {
+        // an unfinished migration continues on the next start
+        migratingProfiles = false;
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(timeout, unit)) {
+                logger.log(Level.SEVERE, "Could not finish writing to the database in time!");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Could not close the database", e);
+                }
+
+                connection = null;
+            }
+        }
+    }
+
+    private void migrateGlobalDiscoveries() throws SQLException {
+        Map<String, String> entries = yamlStorage.loadGlobalDiscoveries();
+
+        int inserted = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT OR IGNORE INTO global_discoveries (species, player_name) VALUES (?, ?)");
+             PreparedStatement changeStatement = prepareChangeStatement()) {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                statement.setString(1, entry.getKey());
+                statement.setString(2, entry.getValue());
+
+                // species discovered on another server first keep their discoverer
+                if (statement.executeUpdate() > 0) {
+                    inserted++;
+                    if (changeStatement != null) {
+                        addChange(changeStatement, serverId, DISCOVERY_CHANGE, entry.getKey(), now);
+                    }
+                }
+            }
+
+            if (changeStatement != null) {
+                changeStatement.executeBatch();
+            }
+
+            setMeta(getMigrationKey(DISCOVERIES_MIGRATED_KEY), String.valueOf(System.currentTimeMillis()));
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        } finally {
+            resetAutoCommit();
+        }
+
+        if (!entries.isEmpty()) {
+            logger.log(Level.INFO, "Migrated {0} global discoveries from {1} to the database {2}, {3} of them were new", new Object[] {
+                    entries.size(), migrationSource, databaseFile, inserted });
+        }
+    }
+
+    private void migrateProfiles() {
+        File[] files = yamlStorage.getProfileFolder().listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files == null) {
+            files = new File[0];
+        }
+
+        long start = System.nanoTime();
+        int migrated = 0;
+        boolean failed = false;
+        Map<UUID, ProfileDataDTO> batch = new LinkedHashMap<>();
+        for (File file : files) {
+            if (!migratingProfiles) {
+                return;
+            }
+
+            UUID uuid = yamlStorage.getProfileUuid(file);
+            if (uuid == null) {
+                continue;
+            }
+
+            try {
+                batch.put(uuid, yamlStorage.readProfile(file));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Skipping the profile file " + file + " during the migration: " + e.getMessage());
+            }
+
+            if (batch.size() >= MIGRATION_BATCH_SIZE) {
+                if (insertMigratedProfiles(batch)) {
+                    migrated += batch.size();
+                } else {
+                    failed = true;
+                }
+
+                batch.clear();
+            }
+        }
+
+        if (insertMigratedProfiles(batch)) {
+            migrated += batch.size();
+        } else {
+            failed = true;
+        }
+
+        synchronized (this) {
+            // failed batches are retried on the next start
+            if (failed || !migratingProfiles || connection == null) {
+                return;
+            }
+
+            try {
+                setMeta(getMigrationKey(PROFILES_MIGRATED_KEY), String.valueOf(System.currentTimeMillis()));
+                migratingProfiles = false;
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Could not finish the profile migration", e);
+                return;
+            }
+        }
+
+        logger.log(Level.INFO, "Migrated {0} player profiles from {1} to the database {2} in {3} ms", new Object[] {
+                migrated, migrationSource, databaseFile, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) });
+    }
+
+    private synchronized boolean insertMigratedProfiles(Map<UUID, ProfileDataDTO> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        if (connection == null) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            connection.setAutoCommit(false);
+
+            // profiles saved since the migration started are newer than their files, so they are ignored,
+            // but profiles of a shared database can come from other servers, so the files are merged into them
+            try (PreparedStatement speciesStatement = connection.prepareStatement(shared
+                    ? "INSERT OR IGNORE INTO profile_species (uuid, species) VALUES (?, ?)"
+                    : "INSERT OR IGNORE INTO profile_species (uuid, species) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM profiles WHERE uuid = ?)");
+                 PreparedStatement profileStatement = connection.prepareStatement(shared
+                         ? "INSERT OR REPLACE INTO profiles (uuid, discovered_count, updated_at, version) VALUES (?, (SELECT COUNT(*) FROM profile_species WHERE uuid = ?), ?, "
+                                 + "COALESCE((SELECT version FROM profiles WHERE uuid = ?), 0) + 1)"
+                         : "INSERT OR IGNORE INTO profiles (uuid, discovered_count, updated_at) VALUES (?, ?, ?)");
+                 PreparedStatement changeStatement = prepareChangeStatement()) {
+                for (Map.Entry<UUID, ProfileDataDTO> entry : batch.entrySet()) {
+                    String key = entry.getKey().toString();
+                    List<String> uids = getUids(entry.getValue().getDiscoveredIds(), entry.getValue().getUnknownBees());
+
+                    for (String uid : uids) {
+                        speciesStatement.setString(1, key);
+                        speciesStatement.setString(2, uid);
+                        if (!shared) {
+                            speciesStatement.setString(3, key);
+                        }
+                        speciesStatement.addBatch();
+                    }
+
+                    profileStatement.setString(1, key);
+                    if (shared) {
+                        profileStatement.setString(2, key);
+                    } else {
+                        profileStatement.setInt(2, uids.size());
+                    }
+                    profileStatement.setLong(3, now);
+                    if (shared) {
+                        profileStatement.setString(4, key);
+                    }
+                    profileStatement.addBatch();
+
+                    // every server has to reload the merged profile, this one might have loaded it before it was merged
+                    if (changeStatement != null) {
+                        addChange(changeStatement, MERGED_CHANGE_SERVER, PROFILE_CHANGE, key, now);
+                    }
+                }
+
+                speciesStatement.executeBatch();
+                profileStatement.executeBatch();
+                if (changeStatement != null) {
+                    changeStatement.executeBatch();
+                }
+            }
+
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            rollback();
+            logger.log(Level.SEVERE, "Could not migrate " + batch.size() + " player profiles, they will be retried on the next start", e);
+            return false;
+        } finally {
+            resetAutoCommit();
+        }
+    }
+
+    @Nonnull
+    private List<String> getDiscoveredUids(SlimyBeesPlayerProfile.Snapshot snapshot) {
+        return getUids(snapshot.getDiscoveredIds(), snapshot.getUnknownBees());
+    }
+
+    @Nonnull
+    private List<String> getUids(BitSet ids, Set<String> unknownBees) {
+        List<String> uids = new ArrayList<>(ids.cardinality() + unknownBees.size());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            String uid = alleleRegistry.getAssignedUid(ChromosomeType.SPECIES, id);
+            if (uid != null) {
+                uids.add(uid);
+            }
+        }
+
+        uids.addAll(unknownBees);
+        return uids;
+    }
+
+    /**
+     * Prepares a statement adding entries to the change log, see {@link #addChange}.
+     *
+     * @return The statement or null if the database is not shared
+     */
+    @Nullable
+    private PreparedStatement prepareChangeStatement() throws SQLException {
+        return shared ? connection.prepareStatement("INSERT INTO changes (server, kind, key, created_at) VALUES (?, ?, ?, ?)") : null;
+    }
+
+    private void addChange(PreparedStatement statement, String server, String kind, String key, long now) throws SQLException {
+        statement.setString(1, server);
+        statement.setString(2, kind);
+        statement.setString(3, key);
+        statement.setLong(4, now);
+        statement.addBatch();
+    }
+
+    /**
+     * Adds the version column to the profiles table of databases created before profiles were versioned.
+     */
+    private void addVersionColumn(Statement statement) throws SQLException {
+        try (ResultSet result = statement.executeQuery("PRAGMA table_info(profiles)")) {
+            while (result.next()) {
+                if ("version".equals(result.getString("name"))) {
+                    return;
+                }
+            }
+        }
+
+        statement.execute("ALTER TABLE profiles ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /**
+     * Returns the meta key marking a finished migration. Every server of a shared database
+     * migrates its own data folder, so the key contains the folder.
+     */
+    @Nonnull
+    private String getMigrationKey(String key) {
+        return shared ? key + ":" + migrationSource : key;
+    }
+
+    @Nullable
+    private String getMeta(String key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT value FROM meta WHERE key = ?")) {
+            statement.setString(1, key);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        }
+    }
+
+    private void setMeta(String key, String value) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)")) {
+            statement.setString(1, key);
+            statement.setString(2, value);
+            statement.executeUpdate();
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not roll back a database transaction", e);
+        }
+    }
+
+    private void resetAutoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not reset the database connection", e);
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.log(Level.WARNING, "The database is closed, some player data will not be saved!");
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Changes made to a shared {@link PlayerDataStorage} by other servers.
+ */
+@ParametersAreNonnullByDefault
+public class StorageChangesDTO {
+
+    private static final StorageChangesDTO EMPTY = new StorageChangesDTO(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<UUID, Integer> changedProfiles;
+    private final Map<String, String> globalDiscoveries;
+
+    /**
+     * Creates the changes.
+     *
+     * @param changedProfiles {@link UUID}s of changed profiles mapped to their current number of discoveries
+     * @param globalDiscoveries Newly discovered species uids mapped to the names of players who discovered them first
+     */
+    public StorageChangesDTO(Map<UUID, Integer> changedProfiles, Map<String, String> globalDiscoveries) {
+        Validate.notNull(changedProfiles, "更改的档案不能为空!");
+        Validate.notNull(globalDiscoveries, "全局发现不能为空!");
+
+        this.changedProfiles = changedProfiles;
+        this.globalDiscoveries = globalDiscoveries;
+    }
+
+    @Nonnull
+    public static StorageChangesDTO empty() {
+        return EMPTY;
+    }
+
+    @Nonnull
+    public Map<UUID, Integer> getChangedProfiles() {
+        return Collections.unmodifiableMap(changedProfiles);
+    }
+
+    @Nonnull
+    public Map<String, String> getGlobalDiscoveries() {
+        return Collections.unmodifiableMap(globalDiscoveries);
+    }
+
+    public boolean isEmpty() {
+        return changedProfiles.isEmpty() && globalDiscoveries.isEmpty();
+    }
+
+}
@@ -0,0 +1,342 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import cz.martinbrom.slimybees.utils.FileUtils;
+
+/**
+ * The original {@link PlayerDataStorage}, which keeps a single YAML file per player
+ * and the global discoveries in a {@link DiscoveryJournal}.
+ * The number of discoveries of every player is kept in a {@link DiscoveryCountIndex}.
+ * <p>
+ * A profile file contains the discovered species ids in a compact form,
+ * as well as the legacy per-species keys, so it can still be read by older versions.
+ * The compact ids are stored with a fingerprint of the assigned ids they refer to.
+ * If the assigned ids change (e.g. because the file with them has been deleted),
+ * the legacy keys are read instead.
+ */
+@ParametersAreNonnullByDefault
+public class YamlPlayerDataStorage implements PlayerDataStorage {
+
+    public static final String BEE_SPECIES_KEY = "discovered_bee_species";
+    public static final String BEE_SPECIES_IDS_KEY = "discovered_bee_species_ids";
+    public static final String BEE_SPECIES_IDS_FINGERPRINT_KEY = "discovered_bee_species_ids_fingerprint";
+    public static final String PROFILE_FOLDER = "data-storage/SlimyBees/Players";
+
+    private final AlleleRegistry alleleRegistry;
+    private final DiscoveryJournal discoveryJournal;
+    private final DiscoveryCountIndex discoveryCountIndex;
+    // fingerprints of the assigned species ids by the number of fingerprinted ids, see #getFingerprint(int)
+    private final Map<Integer, String> fingerprints = new ConcurrentHashMap<>();
+
+    public YamlPlayerDataStorage(AlleleRegistry alleleRegistry, Logger logger) {
+        Validate.notNull(alleleRegistry, "等位基因注册表不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+
+        this.alleleRegistry = alleleRegistry;
+        discoveryJournal = new DiscoveryJournal(Paths.get("data-storage/SlimyBees/discoveries.yml"),
+                Paths.get("data-storage/SlimyBees/discoveries.journal"), logger);
+        discoveryCountIndex = new DiscoveryCountIndex(Paths.get("data-storage/SlimyBees/discovery-counts.yml"), logger);
+    }
+
+    @Override
+    public void open() {
+        // files are created when they are first written
+    }
+
+    @Nonnull
+    @Override
+    public ProfileDataDTO loadProfile(UUID uuid) throws IOException {
+        Validate.notNull(uuid, "无法为空 UUID 加载档案!");
+
+        return readProfile(getProfileFile(uuid));
+    }
+
+    /**
+     * Reads the data of a profile from given file.
+     *
+     * @param file The profile file
+     * @return The {@link ProfileDataDTO}, empty if the file does not exist
+     * @throws IOException If the file cannot be read or parsed
+     */
+    @Nonnull
+    public ProfileDataDTO readProfile(File file) throws IOException {
+        Validate.notNull(file, "档案文件不能为空!");
+
+        if (!file.exists()) {
+            return ProfileDataDTO.empty();
+        }
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.load(file);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("无效的档案文件 " + file, e);
+        }
+
+        return parse(yaml, file.getName());
+    }
+
+    /**
+     * Reads the data of a profile from given loaded profile file.
+     *
+     * @param yaml The loaded profile file
+     * @param name The name of the profile file, used in error messages
+     * @return The {@link ProfileDataDTO}
+     * @throws IOException If the file content is not valid
+     */
+    @Nonnull
+    ProfileDataDTO parse(YamlConfiguration yaml, String name) throws IOException {
+        BitSet discoveredIds = new BitSet();
+        Set<String> unknownBees = new HashSet<>();
+
+        // files saved by older versions only contain the legacy keys,
+        // the compact ids are only used if they still refer to the same species
+        ConfigurationSection section = yaml.getConfigurationSection(BEE_SPECIES_KEY);
+        String compactIds = yaml.getString(BEE_SPECIES_IDS_KEY);
+        if (compactIds != null && section != null && !matchesFingerprint(yaml.getString(BEE_SPECIES_IDS_FINGERPRINT_KEY))) {
+            compactIds = null;
+        }
+
+        if (compactIds != null) {
+            try {
+                discoveredIds.or(BitSet.valueOf(Base64.getDecoder().decode(compactIds)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("档案文件中的已发现物种 id 无效: " + name, e);
+            }
+        }
+
+        if (section != null) {
+            for (String uid : section.getKeys(false)) {
+                int id = alleleRegistry.getAssignedId(ChromosomeType.SPECIES, uid);
+                if (id < 0) {
+                    unknownBees.add(uid);
+                } else if (compactIds == null) {
+                    discoveredIds.set(id);
+                }
+            }
+        }
+
+        return new ProfileDataDTO(discoveredIds, unknownBees);
+    }
+
+    @Override
+    public void saveProfiles(List<SlimyBeesPlayerProfile.Snapshot> snapshots) throws IOException {
+        Validate.notNull(snapshots, "保存的快照不能为空!");
+
+        IOException exception = null;
+        for (SlimyBeesPlayerProfile.Snapshot snapshot : snapshots) {
+            byte[] data = serialize(snapshot.getDiscoveredIds(), snapshot.getUnknownBees());
+            Path file = getProfileFile(snapshot.getUuid()).toPath();
+            int count = snapshot.getDiscoveredIds().cardinality() + snapshot.getUnknownBees().size();
+
+            try {
+                snapshot.writeIfNewer(s -> {
+                    // updated first, an index written in the meantime is older than the file
+                    discoveryCountIndex.update(s.getUuid(), count);
+                    FileUtils.writeAtomically(file, data);
+                });
+            } catch (IOException e) {
+                // try to save the rest of the profiles anyway
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only reads the profile files missing in the {@link DiscoveryCountIndex}, or all of them if the index is missing.
+     */
+    @Nonnull
+    @Override
+    public Map<UUID, Integer> loadDiscoveryCounts() {
+        File[] files = getProfileFolder().listFiles((dir, name) -> name.endsWith(".yml"));
+        Map<UUID, File> profileFiles = new HashMap<>();
+        if (files != null) {
+            for (File file : files) {
+                UUID uuid = getProfileUuid(file);
+                if (uuid != null) {
+                    profileFiles.put(uuid, file);
+                }
+            }
+        }
+
+        return discoveryCountIndex.load(profileFiles, file -> readProfile(file).getDiscoveredCount());
+    }
+
+    /**
+     * Returns the {@link UUID} of the player whose profile is stored in given file.
+     *
+     * @param file The profile file
+     * @return The {@link UUID} or null if the file is not a profile file
+     */
+    @Nullable
+    public UUID getProfileUuid(File file) {
+        String name = file.getName();
+        if (!name.endsWith(".yml")) {
+            return null;
+        }
+
+        try {
+            return UUID.fromString(name.substring(0, name.length() - ".yml".length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean supportsConcurrentWrites() {
+        return true;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> loadGlobalDiscoveries() {
+        return discoveryJournal.load();
+    }
+
+    @Override
+    public void addGlobalDiscovery(String uid, String playerName) {
+        discoveryJournal.append(uid, playerName);
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    @Nonnull
+    @Override
+    public StorageChangesDTO pollChanges() {
+        return StorageChangesDTO.empty();
+    }
+
+    @Override
+    public void compact() {
+        discoveryJournal.compact();
+        discoveryCountIndex.save();
+    }
+
+    @Override
+    public void close(long timeout, TimeUnit unit) {
+        discoveryJournal.close(timeout, unit);
+        discoveryCountIndex.save();
+    }
+
+    /**
+     * Returns the folder containing all profile files.
+     *
+     * @return The profile folder
+     */
+    @Nonnull
+    public File getProfileFolder() {
+        return new File(PROFILE_FOLDER);
+    }
+
+    /**
+     * Returns whether given fingerprint stored with compact ids matches the currently assigned ids.
+     *
+     * @param fingerprint The stored fingerprint, null for files saved before fingerprints were added
+     * @return True if the compact ids refer to the same species, false otherwise
+     */
+    private boolean matchesFingerprint(@Nullable String fingerprint) {
+        if (fingerprint == null) {
+            return false;
+        }
+
+        int index = fingerprint.indexOf(':');
+        try {
+            int count = Integer.parseInt(fingerprint.substring(0, Math.max(0, index)));
+            return count >= 0 && count <= alleleRegistry.getAssignedIdCount(ChromosomeType.SPECIES)
+                    && fingerprint.equals(getFingerprint(count));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the first assigned species ids, consisting of their number
+     * and the hash of their uids, see {@link AlleleRegistry#getAssignedIdsHash}.
+     *
+     * @param count The number of fingerprinted ids
+     * @return The fingerprint
+     */
+    @Nonnull
+    private String getFingerprint(int count) {
+        return fingerprints.computeIfAbsent(count, c ->
+                c + ":" + Integer.toHexString(alleleRegistry.getAssignedIdsHash(ChromosomeType.SPECIES, c)));
+    }
+
+    @Nonnull
+    private File getProfileFile(UUID uuid) {
+        return new File(PROFILE_FOLDER, uuid + ".yml");
+    }
+
+    /**
+     * Creates the content of a profile file.
+     *
+     * @param ids Ids of discovered species
+     * @param unknownBees Uids of discovered species without an assigned id
+     * @return The content of the profile file
+     */
+    @Nonnull
+    byte[] serialize(BitSet ids, Collection<String> unknownBees) {
+        List<String> uids = new ArrayList<>(unknownBees);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            String uid = alleleRegistry.getAssignedUid(ChromosomeType.SPECIES, id);
+            if (uid != null) {
+                uids.add(uid);
+            }
+        }
+
+        Collections.sort(uids);
+
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set(BEE_SPECIES_IDS_KEY, Base64.getEncoder().encodeToString(ids.toByteArray()));
+        yaml.set(BEE_SPECIES_IDS_FINGERPRINT_KEY, getFingerprint(alleleRegistry.getAssignedIdCount(ChromosomeType.SPECIES)));
+        for (String uid : uids) {
+            yaml.set(BEE_SPECIES_KEY + "." + uid, true);
+        }
+
+        return yaml.saveToString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
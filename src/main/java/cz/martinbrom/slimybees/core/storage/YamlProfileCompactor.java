@@ -0,0 +1,284 @@
+package cz.martinbrom.slimybees.core.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import cz.martinbrom.slimybees.core.ProfileSaveService;
+import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
+import cz.martinbrom.slimybees.core.SlimyBeesRegistry;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
+import cz.martinbrom.slimybees.core.genetics.enums.ChromosomeType;
+import cz.martinbrom.slimybees.utils.FileUtils;
+
+/**
+ * Rewrites all YAML profile files of the {@link YamlPlayerDataStorage} in the background,
+ * dropping discoveries of species which are not registered anymore.
+ * <p>
+ * The profile folder is streamed in chunks, files of each chunk are parsed and written in parallel
+ * by a {@link ForkJoinPool}. Every rewritten file is parsed again and compared to the original data
+ * before it replaces the original file, so a bug in the serialization never loses any data.
+ * Profiles which are currently loaded or still being saved are skipped, they are rewritten by their next save anyway.
+ * Files are replaced while holding the load lock of their profile, so the profile cannot be loaded and saved meanwhile.
+ */
+@ParametersAreNonnullByDefault
+public class YamlProfileCompactor {
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int SPLIT_THRESHOLD = 64;
+
+    private final YamlPlayerDataStorage storage;
+    private final AlleleRegistry alleleRegistry;
+    private final SlimyBeesRegistry registry;
+    private final ProfileSaveService profileSaveService;
+    private final Logger logger;
+
+    private final AtomicInteger totalFiles = new AtomicInteger();
+    private final AtomicInteger processedFiles = new AtomicInteger();
+    private final AtomicInteger rewrittenFiles = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    private final AtomicLong prunedSpecies = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+    public YamlProfileCompactor(YamlPlayerDataStorage storage, AlleleRegistry alleleRegistry,
+                                SlimyBeesRegistry registry, ProfileSaveService profileSaveService, Logger logger) {
+        Validate.notNull(storage, "存储不能为空!");
+        Validate.notNull(alleleRegistry, "等位基因注册表不能为空!");
+        Validate.notNull(registry, "注册表不能为空!");
+        Validate.notNull(profileSaveService, "档案保存服务不能为空!");
+        Validate.notNull(logger, "日志记录器不能为空!");
+
+        this.storage = storage;
+        this.alleleRegistry = alleleRegistry;
+        this.registry = registry;
+        this.profileSaveService = profileSaveService;
+        this.logger = logger;
+    }
+
+    /**
+     * Compacts all profile files, blocking the current thread until it is done.
+     * Should never be called from the main thread.
+     *
+     * @param parallelism The number of threads parsing and writing the files
+     */
+    public void run(int parallelism) {
+        Validate.isTrue(parallelism > 0, "并行线程数必须大于零!");
+
+        File folder = storage.getProfileFolder();
+        String[] names = folder.list();
+        // only an estimate for the progress, the folder is streamed
+        totalFiles.set(names == null ? 0 : names.length);
+        startNanos = System.nanoTime();
+
+        // nothing unregistered can have an id
+        BitSet registeredIds = alleleRegistry.getRegisteredIds(ChromosomeType.SPECIES);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath(), "*.yml")) {
+            List<Path> chunk = new ArrayList<>(CHUNK_SIZE);
+            for (Path file : stream) {
+                chunk.add(file);
+                if (chunk.size() >= CHUNK_SIZE) {
+                    pool.invoke(new CompactTask(chunk, registeredIds));
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+
+            pool.invoke(new CompactTask(chunk, registeredIds));
+        } catch (NoSuchFileException e) {
+            // no profiles yet
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not list the profile files in " + folder, e);
+        } finally {
+            pool.shutdown();
+            endNanos = System.nanoTime();
+        }
+    }
+
+    private void compact(Path file, BitSet registeredIds) {
+        try {
+            UUID uuid = storage.getProfileUuid(file.toFile());
+            if (uuid == null || isInUse(uuid)) {
+                skippedFiles.incrementAndGet();
+                return;
+            }
+
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            byte[] original = Files.readAllBytes(file);
+            String name = file.getFileName().toString();
+            ProfileDataDTO data = storage.parse(load(original, name), name);
+
+            BitSet keptIds = (BitSet) data.getDiscoveredIds().clone();
+            keptIds.and(registeredIds);
+            // unknown bees are part of the discovered count
+            int pruned = data.getDiscoveredCount() - keptIds.cardinality();
+
+            byte[] compacted = storage.serialize(keptIds, Collections.emptySet());
+            bytesBefore.addAndGet(original.length);
+
+            if (Arrays.equals(original, compacted)) {
+                bytesAfter.addAndGet(original.length);
+                return;
+            }
+
+            // the round trip has to give the same data back
+            ProfileDataDTO verified = storage.parse(load(compacted, name), name);
+            if (!verified.getDiscoveredIds().equals(keptIds) || !verified.getUnknownBees().isEmpty()) {
+                failedFiles.incrementAndGet();
+                bytesAfter.addAndGet(original.length);
+                logger.log(Level.SEVERE, "Compacted profile file {0} does not match the original, keeping the original", name);
+                return;
+            }
+
+            Lock lock = SlimyBeesPlayerProfile.getLoadLock(uuid);
+            lock.lock();
+            try {
+                // the player might have joined and saved the profile meanwhile
+                if (isInUse(uuid) || Files.getLastModifiedTime(file).toMillis() != lastModified) {
+                    skippedFiles.incrementAndGet();
+                    bytesAfter.addAndGet(original.length);
+                    return;
+                }
+
+                FileUtils.writeAtomically(file, compacted);
+            } finally {
+                lock.unlock();
+            }
+
+            rewrittenFiles.incrementAndGet();
+            prunedSpecies.addAndGet(pruned);
+            bytesAfter.addAndGet(compacted.length);
+        } catch (IOException e) {
+            failedFiles.incrementAndGet();
+            logger.log(Level.WARNING, "Could not compact the profile file " + file + ": " + e.getMessage());
+        } finally {
+            processedFiles.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns whether the profile of given player is loaded or still being saved, so its file can change anytime.
+     */
+    private boolean isInUse(UUID uuid) {
+        return registry.getPlayerProfiles().containsKey(uuid) || profileSaveService.hasPendingSave(uuid);
+    }
+
+    private static YamlConfiguration load(byte[] data, String name) throws IOException {
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.loadFromString(new String(data, StandardCharsets.UTF_8));
+        } catch (InvalidConfigurationException e) {
+            throw new IOException("无效的档案文件 " + name, e);
+        }
+
+        return yaml;
+    }
+
+    /**
+     * Returns an estimate of the number of files to process.
+     *
+     * @return The number of files in the profile folder when the compaction started
+     */
+    public int getTotalFiles() {
+        return Math.max(totalFiles.get(), processedFiles.get());
+    }
+
+    public int getProcessedFiles() {
+        return processedFiles.get();
+    }
+
+    public int getRewrittenFiles() {
+        return rewrittenFiles.get();
+    }
+
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    public int getFailedFiles() {
+        return failedFiles.get();
+    }
+
+    public long getPrunedSpecies() {
+        return prunedSpecies.get();
+    }
+
+    public long getBytesBefore() {
+        return bytesBefore.get();
+    }
+
+    public long getBytesAfter() {
+        return bytesAfter.get();
+    }
+
+    /**
+     * Returns the time spent compacting so far.
+     *
+     * @return The duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+        if (startNanos == 0) {
+            return 0;
+        }
+
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**
+     * Compacts a range of files, splitting it in halves until it is small enough.
+     */
+    private class CompactTask extends RecursiveAction {
+
+        private final List<Path> files;
+        private final BitSet registeredIds;
+
+        private CompactTask(List<Path> files, BitSet registeredIds) {
+            this.files = files;
+            this.registeredIds = registeredIds;
+        }
+
+        @Override
+        protected void compute() {
+            if (files.size() <= SPLIT_THRESHOLD) {
+                for (Path file : files) {
+                    compact(file, registeredIds);
+                }
+
+                return;
+            }
+
+            int middle = files.size() / 2;
+            invokeAll(new CompactTask(files.subList(0, middle), registeredIds),
+                    new CompactTask(files.subList(middle, files.size()), registeredIds));
+        }
+
+    }
+
+}
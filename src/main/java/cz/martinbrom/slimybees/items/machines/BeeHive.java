@@ -4,13 +4,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Consumer;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.Validate;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.Material;
@@ -28,11 +29,14 @@ import cz.martinbrom.slimybees.core.genetics.BeeGeneticService;
 import cz.martinbrom.slimybees.core.genetics.BreedingModifierDTO;
 import cz.martinbrom.slimybees.core.genetics.BreedingResultDTO;
 import cz.martinbrom.slimybees.core.genetics.Genome;
+import cz.martinbrom.slimybees.core.genetics.alleles.AlleleEffect;
 import cz.martinbrom.slimybees.core.machine.AbstractTickingContainer;
 import cz.martinbrom.slimybees.core.machine.BeeBreedingOperation;
-import cz.martinbrom.slimybees.core.machine.WaitingOperation;
+import cz.martinbrom.slimybees.core.machine.HiveEffectDispatcher;
+import cz.martinbrom.slimybees.core.machine.HiveScheduler;
 import cz.martinbrom.slimybees.items.bees.Drone;
 import cz.martinbrom.slimybees.items.bees.Princess;
+import cz.martinbrom.slimybees.setup.AlleleUids;
 import cz.martinbrom.slimybees.utils.ArrayUtils;
 import cz.martinbrom.slimybees.utils.MenuUtils;
 import io.github.thebusybiscuit.slimefun4.api.items.ItemGroup;
@@ -42,11 +46,10 @@ import io.github.thebusybiscuit.slimefun4.api.recipes.RecipeType;
 import io.github.thebusybiscuit.slimefun4.core.attributes.MachineProcessHolder;
 import io.github.thebusybiscuit.slimefun4.core.attributes.RecipeDisplayItem;
 import io.github.thebusybiscuit.slimefun4.core.machines.MachineProcessor;
-import io.github.thebusybiscuit.slimefun4.implementation.Slimefun;
-import io.github.thebusybiscuit.slimefun4.libraries.dough.blocks.BlockPosition;
 import io.github.thebusybiscuit.slimefun4.libraries.dough.items.CustomItemStack;
 import me.mrCookieSlime.CSCoreLibPlugin.Configuration.Config;
 import me.mrCookieSlime.CSCoreLibPlugin.general.Inventory.ChestMenu;
+import me.mrCookieSlime.Slimefun.api.BlockStorage;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenu;
 import me.mrCookieSlime.Slimefun.api.inventory.BlockMenuPreset;
 
@@ -57,6 +60,16 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
     public static final int BREEDING_WAIT_TICKS = 10;
     public static final int MISSING_PLANT_WAIT_TICKS = 20;
     public static final int EFFECT_TICKS = 20;
+    // max number of ticks of progress lost when the server stops
+    public static final int CHECKPOINT_TICKS = 60;
+    // hives loaded at the same time start within this many ticks, so they don't all breed in the same tick
+    public static final int STARTUP_SPREAD_TICKS = 40;
+
+    private static final String OPERATION_KEY = "breeding-operation";
+    private static final String PROGRESS_KEY = "breeding-progress";
+    private static final String CHECKPOINT_VERSION = "1";
+    private static final char FIELD_DELIMITER = ';';
+    private static final char LIST_DELIMITER = ',';
 
     private static final int PRINCESS_SLOT = 3;
     private static final int DRONE_SLOT = 5;
@@ -70,10 +83,11 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
     private final BlockSearchService blockSearchService;
     private final BeeProductionService productionService;
     private final BeeGeneticService geneticService;
+    private final HiveEffectDispatcher effectDispatcher;
 
     private final List<ItemStack> displayRecipes;
     private final MachineProcessor<BeeBreedingOperation> processor = new MachineProcessor<>(this);
-    private final Map<BlockPosition, WaitingOperation> waitingHives = new ConcurrentHashMap<>();
+    private final HiveScheduler scheduler = new HiveScheduler();
 
     private final boolean autoFill;
 
@@ -83,6 +97,7 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
         blockSearchService = SlimyBeesPlugin.getBlockSearchService();
         productionService = SlimyBeesPlugin.getBeeProductionService();
         geneticService = SlimyBeesPlugin.getBeeGeneticService();
+        effectDispatcher = SlimyBeesPlugin.getHiveEffectDispatcher();
 
         this.autoFill = autoFill;
 
@@ -98,36 +113,108 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
         return processor;
     }
 
+    @Override
+    protected void uniqueTick() {
+        scheduler.advance();
+    }
+
+    @Override
+    protected boolean shouldTick(Block b) {
+        // hives only do something when their operation finishes, an effect is due or a wait expires
+        return scheduler.isDue(b);
+    }
+
     @Override
     protected void tick(BlockMenu menu, Block b, Config data) {
-        if (isHiveWaiting(b)) {
-            return;
+        BeeBreedingOperation operation = processor.getOperation(b);
+        if (operation == null) {
+            // the operation might have been running when the server stopped
+            operation = restoreOperation(menu, b, data);
         }
 
-        BeeBreedingOperation operation = processor.getOperation(b);
         if (operation != null) {
+            int previousProgress = operation.getProgress();
+            operation.updateProgress(scheduler.getCurrentTick());
             if (!operation.isFinished()) {
-                if (operation.getProgress() % EFFECT_TICKS == 0) {
-                    Slimefun.runSync(() -> operation.applyEffect(b.getLocation()));
+                // the hive might wake up later than planned, e.g. when its menu was open
+                if (operation.hasEffect() && previousProgress / EFFECT_TICKS != operation.getProgress() / EFFECT_TICKS) {
+                    submitEffect(b, operation);
                 }
 
-                processor.updateProgressBar(menu, STATUS_SLOT, operation);
-                operation.addProgress(1);
-            } else {
-                menu.replaceExistingItem(STATUS_SLOT, new CustomItemStack(Material.BLACK_STAINED_GLASS_PANE, " "));
-
-                // if the user removed something during the crafting process, no output will be added
-                Map<Integer, ItemStack> missingItems = menu.toInventory().removeItem(operation.getParents());
-                if (missingItems.isEmpty()) {
-                    addOutputs(menu, b, operation.getPrincess(), operation.getDrones(), operation.getProducts());
+                if (operation.getProgress() - operation.getCheckpointedProgress() >= CHECKPOINT_TICKS) {
+                    BlockStorage.addBlockInfo(b, PROGRESS_KEY, String.valueOf(operation.getProgress()));
+                    operation.setCheckpointedProgress(operation.getProgress());
                 }
 
-                processor.endOperation(b);
+                scheduleNextWake(menu, b, operation);
+                return;
+            }
+
+            menu.replaceExistingItem(STATUS_SLOT, new CustomItemStack(Material.BLACK_STAINED_GLASS_PANE, " "));
+
+            // if the user removed something during the crafting process, no output will be added
+            Map<Integer, ItemStack> missingItems = menu.toInventory().removeItem(operation.getParents());
+            if (missingItems.isEmpty()) {
+                addOutputs(menu, b, operation.getPrincess(), operation.getDrones(), operation.getProducts());
             }
-        } else {
-            startNextOperation(menu, b);
+
+            endOperation(b);
+        }
+
+        startNextOperation(menu, b);
+    }
+
+    private void submitEffect(Block b, BeeBreedingOperation operation) {
+        AlleleEffect.EffectFunction effect = operation.getEffectFunction();
+        if (effect != null) {
+            effectDispatcher.submit(b.getLocation(), effect, operation.getRange());
+        }
+    }
+
+    private void scheduleNextWake(BlockMenu menu, Block b, BeeBreedingOperation operation) {
+        // the progress bar is only refreshed while someone is looking at it
+        if (menu.hasViewer()) {
+            processor.updateProgressBar(menu, STATUS_SLOT, operation);
+            scheduler.schedule(b, 1);
+            return;
+        }
+
+        int ticks = Math.min(operation.getRemainingTicks(),
+                operation.getCheckpointedProgress() + CHECKPOINT_TICKS - operation.getProgress());
+        if (operation.hasEffect()) {
+            ticks = Math.min(ticks, EFFECT_TICKS - operation.getProgress() % EFFECT_TICKS);
+        }
+
+        scheduler.schedule(b, ticks);
+    }
+
+    /**
+     * Wakes the hive at given {@link Block} up, because its chunk has been loaded.
+     * The ticks for which the chunk was unloaded are not counted into the progress of the running operation.
+     *
+     * @param b The hive {@link Block}
+     */
+    public void onChunkLoad(Block b) {
+        BeeBreedingOperation operation = processor.getOperation(b);
+        if (operation != null) {
+            operation.skipTicks(scheduler.getCurrentTick());
+        }
+
+        scheduler.wake(b);
+    }
+
+    /**
+     * Puts the hive at given {@link Block} to sleep until its chunk is loaded again, see {@link #onChunkLoad(Block)}.
+     *
+     * @param b The hive {@link Block}
+     */
+    public void onChunkUnload(Block b) {
+        BeeBreedingOperation operation = processor.getOperation(b);
+        if (operation != null) {
+            operation.updateProgress(scheduler.getCurrentTick());
         }
 
+        scheduler.remove(b);
     }
 
     protected int getPrincessSlot() {
@@ -147,8 +234,8 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
         menu.dropItems(l, getOutputSlots());
 
         Block b = e.getBlock();
-        processor.endOperation(b);
-        resetWait(b);
+        endOperation(b);
+        scheduler.remove(b);
     }
 
     @Nonnull
@@ -169,6 +256,10 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
     protected void onNewInstance(BlockMenu menu, Block b) {
         super.onNewInstance(menu, b);
 
+        // spread the first ticks of hives loaded together (e.g. on startup), opening the menu wakes the hive right away
+        scheduler.schedule(b, 1 + ThreadLocalRandom.current().nextInt(STARTUP_SPREAD_TICKS));
+        menu.addMenuOpeningHandler(p -> scheduler.wake(b));
+
         menu.addItem(STATUS_SLOT, new CustomItemStack(Material.BLACK_STAINED_GLASS_PANE, " "), (p, s, i, a) -> {
             resetWait(b);
             return false;
@@ -188,12 +279,18 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
 
         BeeBreedingOperation operation = processor.getOperation(b);
         if (operation != null) {
-            processor.endOperation(b);
+            endOperation(b);
         }
     }
 
+    private void endOperation(Block b) {
+        processor.endOperation(b);
+        BlockStorage.addBlockInfo(b, OPERATION_KEY, null);
+        BlockStorage.addBlockInfo(b, PROGRESS_KEY, null);
+    }
+
     private void resetWait(Block b) {
-        waitingHives.remove(new BlockPosition(b));
+        scheduler.wake(b);
     }
 
     @Nonnull
@@ -302,35 +399,146 @@ public class BeeHive extends AbstractTickingContainer implements MachineProcessH
         // breed and produce
         BreedingModifierDTO modifier = getBreedingModifier(menu);
         BreedingResultDTO dto = geneticService.breed(princessGenome, droneGenome, modifier);
-        List<ItemStack> products = productionService.produce(princessGenome, modifier);
+        int[] productAmounts = productionService.produceAmounts(princessGenome, modifier);
+        List<ItemStack> products = productionService.createProducts(princessGenome.getSpecies(), productAmounts);
 
-        // make sure we don't consume multiple drones / princesses
-        princessItem = princessItem.clone();
-        princessItem.setAmount(1);
-        droneItem = droneItem.clone();
-        droneItem.setAmount(1);
+        BeeBreedingOperation operation = new BeeBreedingOperation(getSingleItem(princessItem), getSingleItem(droneItem),
+                dto, products, getEffectFunction(princessGenome), princessGenome.getRangeValue(), scheduler.getCurrentTick());
+        processor.startOperation(b, operation);
+
+        BlockStorage.addBlockInfo(b, OPERATION_KEY, createCheckpoint(princessGenome, droneGenome, dto, productAmounts));
+        BlockStorage.addBlockInfo(b, PROGRESS_KEY, null);
+
+        if (operation.hasEffect()) {
+            submitEffect(b, operation);
+        }
+
+        scheduleNextWake(menu, b, operation);
+    }
+
+    /**
+     * Creates a compact checkpoint of a breeding operation, which is stored in the block data.
+     * Outputs are stored as their serialized {@link Genome}s and product amounts,
+     * parents are only stored to check they are still the same when the operation is restored.
+     */
+    @Nonnull
+    private String createCheckpoint(Genome princessGenome, Genome droneGenome, BreedingResultDTO dto, int[] productAmounts) {
+        StringBuilder builder = new StringBuilder(CHECKPOINT_VERSION)
+                .append(FIELD_DELIMITER).append(dto.getTicks())
+                .append(FIELD_DELIMITER).append(geneticService.serializeGenome(princessGenome))
+                .append(FIELD_DELIMITER).append(geneticService.serializeGenome(droneGenome))
+                .append(FIELD_DELIMITER).append(serializeItemGenome(dto.getPrincess()))
+                .append(FIELD_DELIMITER);
+
+        ItemStack[] drones = dto.getDrones();
+        for (int i = 0; i < drones.length; i++) {
+            if (i > 0) {
+                builder.append(LIST_DELIMITER);
+            }
+
+            builder.append(serializeItemGenome(drones[i]));
+        }
+
+        builder.append(FIELD_DELIMITER);
+        for (int i = 0; i < productAmounts.length; i++) {
+            if (i > 0) {
+                builder.append(LIST_DELIMITER);
+            }
+
+            builder.append(productAmounts[i]);
+        }
 
-        Consumer<Location> effect = l -> princessGenome.getEffectValue().accept(l, princessGenome.getRangeValue());
-        processor.startOperation(b, new BeeBreedingOperation(princessItem, droneItem, dto, products, effect));
+        return builder.toString();
     }
 
-    private boolean isHiveWaiting(Block b) {
-        BlockPosition blockPos = new BlockPosition(b);
-        WaitingOperation waitingOperation = waitingHives.get(blockPos);
-        if (waitingOperation != null) {
-            if (!waitingOperation.isFinished()) {
-                waitingOperation.addProgress(1);
-                return true;
+    @Nonnull
+    private String serializeItemGenome(ItemStack item) {
+        Genome genome = geneticService.getGenomeUnsafe(item);
+        Validate.notNull(genome, "繁殖出的蜜蜂没有基因组!");
+
+        return geneticService.serializeGenome(genome);
+    }
+
+    /**
+     * Restores the breeding operation from the checkpoint stored in the block data, if there is any.
+     * The checkpoint is dropped if the bees in the hive are not the parents anymore or if it is invalid.
+     */
+    @Nullable
+    private BeeBreedingOperation restoreOperation(BlockMenu menu, Block b, Config data) {
+        String checkpoint = data.getString(OPERATION_KEY);
+        if (checkpoint == null) {
+            return null;
+        }
+
+        BeeBreedingOperation operation;
+        try {
+            String[] fields = StringUtils.splitPreserveAllTokens(checkpoint, FIELD_DELIMITER);
+            ItemStack princessItem = menu.getItemInSlot(getPrincessSlot());
+            ItemStack droneItem = menu.getItemInSlot(getDroneSlot());
+            Genome princessGenome = geneticService.getGenome(princessItem);
+            Genome droneGenome = geneticService.getGenome(droneItem);
+
+            if (fields.length != 7 || !CHECKPOINT_VERSION.equals(fields[0])
+                    || princessGenome == null || !fields[2].equals(geneticService.serializeGenome(princessGenome))
+                    || droneGenome == null || !fields[3].equals(geneticService.serializeGenome(droneGenome))) {
+                endOperation(b);
+                return null;
+            }
+
+            int totalTicks = Integer.parseInt(fields[1]);
+            ItemStack princess = geneticService.createChildItemStack(fields[4], true);
+
+            String[] droneGenomes = StringUtils.split(fields[5], LIST_DELIMITER);
+            ItemStack[] drones = new ItemStack[droneGenomes.length];
+            for (int i = 0; i < drones.length; i++) {
+                drones[i] = geneticService.createChildItemStack(droneGenomes[i], false);
+            }
+
+            String[] amountStrings = StringUtils.split(fields[6], LIST_DELIMITER);
+            int[] productAmounts = new int[amountStrings.length];
+            for (int i = 0; i < productAmounts.length; i++) {
+                productAmounts[i] = Integer.parseInt(amountStrings[i]);
             }
 
-            waitingHives.remove(blockPos);
+            String progressString = data.getString(PROGRESS_KEY);
+            int progress = progressString == null ? 0 : Math.min(totalTicks, Integer.parseInt(progressString));
+
+            List<ItemStack> products = productionService.createProducts(princessGenome.getSpecies(), productAmounts);
+            operation = new BeeBreedingOperation(getSingleItem(princessItem), getSingleItem(droneItem),
+                    new BreedingResultDTO(princess, drones, totalTicks), products, getEffectFunction(princessGenome),
+                    princessGenome.getRangeValue(), scheduler.getCurrentTick() - progress);
+            operation.setCheckpointedProgress(progress);
+        } catch (RuntimeException e) {
+            // NumberFormatException, an unknown allele, a missing drone or anything else a corrupted checkpoint causes,
+            // it would fail again on every tick otherwise
+            SlimyBeesPlugin.logger().warning("Dropping an invalid breeding checkpoint of a hive at "
+                    + b.getLocation() + ": " + e);
+            endOperation(b);
+            return null;
         }
 
-        return false;
+        processor.startOperation(b, operation);
+        return operation;
+    }
+
+    @Nonnull
+    private ItemStack getSingleItem(ItemStack item) {
+        // make sure we don't consume multiple drones / princesses
+        ItemStack copy = item.clone();
+        copy.setAmount(1);
+        return copy;
+    }
+
+    @Nullable
+    private AlleleEffect.EffectFunction getEffectFunction(Genome princessGenome) {
+        // no need to wake the hive up just to do nothing
+        return AlleleUids.EFFECT_NONE.equals(princessGenome.getEffect().getUid())
+                ? null
+                : princessGenome.getEffectValue();
     }
 
     private void waitAndShowError(BlockMenu menu, Block b, int ticks, String message) {
-        waitingHives.put(new BlockPosition(b), new WaitingOperation(ticks));
+        scheduler.schedule(b, ticks);
         CustomItemStack errorItem = new CustomItemStack(Material.RED_CONCRETE_POWDER,
                 ChatColor.RED + message,
                 "",
@@ -2,9 +2,13 @@ package cz.martinbrom.slimybees.items.multiblocks;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.bukkit.ChatColor;
@@ -20,9 +24,9 @@ import org.bukkit.inventory.ItemStack;
 
 import cz.martinbrom.slimybees.ItemStacks;
 import cz.martinbrom.slimybees.core.recipe.AbstractRecipe;
-import cz.martinbrom.slimybees.core.recipe.GuaranteedRecipe;
 import cz.martinbrom.slimybees.core.recipe.RandomRecipe;
-import cz.martinbrom.slimybees.core.recipe.RecipeMatchService;
+import cz.martinbrom.slimybees.core.recipe.RecipeIndex;
+import cz.martinbrom.slimybees.core.recipe.RecipeOutcome;
 import io.github.thebusybiscuit.slimefun4.api.items.ItemGroup;
 import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItemStack;
 import io.github.thebusybiscuit.slimefun4.core.multiblocks.MultiBlockMachine;
@@ -35,6 +39,7 @@ import io.github.thebusybiscuit.slimefun4.libraries.paperlib.PaperLib;
 public class Centrifuge extends MultiBlockMachine {
 
     private final List<AbstractRecipe> centrifugeRecipes;
+    private final RecipeIndex recipeIndex;
 
     public Centrifuge(ItemGroup category, SlimefunItemStack item) {
         super(category, item, new ItemStack[] {
@@ -46,6 +51,7 @@ public class Centrifuge extends MultiBlockMachine {
         centrifugeRecipes = new ArrayList<>();
 
         registerCentrifugeRecipes(centrifugeRecipes);
+        recipeIndex = new RecipeIndex(centrifugeRecipes);
     }
 
     private void registerCentrifugeRecipes(List<AbstractRecipe> recipes) {
@@ -72,15 +78,21 @@ public class Centrifuge extends MultiBlockMachine {
             Dispenser dispenser = (Dispenser) state;
             Inventory inv = dispenser.getInventory();
 
-            GuaranteedRecipe recipe = RecipeMatchService.match(Arrays.asList(inv.getContents()), centrifugeRecipes);
+            if (p.isSneaking()) {
+                processAll(p, b, dispBlock, inv);
+                return;
+            }
+
+            AbstractRecipe recipe = recipeIndex.find(Arrays.asList(inv.getContents()));
             if (recipe == null) {
                 Slimefun.getLocalization().sendMessage(p, "machines.unknown-material", true);
                 return;
             }
 
+            RecipeOutcome outcome = recipe.sample(1);
             boolean shouldConsume = false;
             Inventory outputInv = null;
-            List<ItemStack> outputs = recipe.getOutputs();
+            List<ItemStack> outputs = outcome.getOutputs();
             for (ItemStack output : outputs) {
                 // we "cache" output chests in between the iterations
                 if (outputInv == null || !InvUtils.fits(outputInv, output)) {
@@ -93,17 +105,167 @@ public class Centrifuge extends MultiBlockMachine {
                     break;
                 }
 
-                outputInv.addItem(output);
+                // the outcome is shared, and adding an item can change its amount
+                outputInv.addItem(output.clone());
                 shouldConsume = true;
             }
 
             if (outputs.isEmpty() || shouldConsume) {
-                inv.removeItem(recipe.getIngredientsCopy());
+                inv.removeItem(outcome.getIngredientsCopy());
                 p.getWorld().playEffect(b.getLocation(), Effect.IRON_TRAPDOOR_CLOSE, 1);
             }
         }
     }
 
+    /**
+     * Processes all combs in the dispenser at once. Combs are grouped by their recipe,
+     * the outcome of each group is sampled in one go and the merged outputs are inserted together,
+     * so the output inventory is only looked up again when it gets full.
+     * Combs are removed before their outcome is sampled, so only combs which were actually taken are processed.
+     * If the outputs don't fit, combs are put back until the rest fits, then the others are tried again.
+     */
+    private void processAll(Player p, Block b, Block dispBlock, Inventory inv) {
+        Map<AbstractRecipe, Integer> groups = groupByRecipe(inv);
+        if (groups.isEmpty()) {
+            Slimefun.getLocalization().sendMessage(p, "machines.unknown-material", true);
+            return;
+        }
+
+        boolean processed = false;
+        boolean full = false;
+        Inventory outputInv = null;
+        for (Map.Entry<AbstractRecipe, Integer> entry : groups.entrySet()) {
+            AbstractRecipe recipe = entry.getKey();
+            int remaining = entry.getValue();
+
+            while (remaining > 0 && !full) {
+                int repetitions = removeIngredients(inv, recipe, remaining);
+                if (repetitions == 0) {
+                    break;
+                }
+
+                // the rest of the combs cannot be taken from the dispenser
+                remaining = Math.min(remaining, repetitions);
+
+                RecipeOutcome outcome = null;
+                while (repetitions > 0) {
+                    outcome = recipe.sample(repetitions);
+                    outputInv = findOutputInventory(outcome.getOutputs(), outputInv, dispBlock, inv);
+                    if (outcome.getOutputs().isEmpty() || outputInv != null) {
+                        break;
+                    }
+
+                    int returned = repetitions - repetitions / 2;
+                    returnIngredients(inv, recipe, returned);
+                    repetitions -= returned;
+                }
+
+                if (repetitions == 0) {
+                    full = true;
+                    break;
+                }
+
+                for (ItemStack output : outcome.getOutputs()) {
+                    // the outcome is shared, and adding an item can change its amount
+                    outputInv.addItem(output.clone());
+                }
+
+                remaining -= repetitions;
+                processed = true;
+            }
+        }
+
+        if (full) {
+            Slimefun.getLocalization().sendMessage(p, "machines.full-inventory", true);
+        }
+
+        if (processed) {
+            p.getWorld().playEffect(b.getLocation(), Effect.IRON_TRAPDOOR_CLOSE, 1);
+        }
+    }
+
+    /**
+     * Finds an {@link Inventory} which can hold all given outputs, preferring the current one.
+     *
+     * @return The {@link Inventory} or null if the outputs don't fit anywhere
+     */
+    @Nullable
+    private Inventory findOutputInventory(List<ItemStack> outputs, @Nullable Inventory current, Block dispBlock, Inventory dispInv) {
+        if (outputs.isEmpty()) {
+            return current;
+        }
+
+        ItemStack[] items = outputs.toArray(new ItemStack[0]);
+        if (current != null && InvUtils.fitAll(current, items)) {
+            return current;
+        }
+
+        Inventory outputInv = findOutputInventory(items[0], dispBlock, dispInv);
+        return outputInv != null && InvUtils.fitAll(outputInv, items) ? outputInv : null;
+    }
+
+    /**
+     * Removes the single ingredient of given recipe for up to given number of repetitions.
+     *
+     * @return The number of repetitions whose ingredients were removed
+     */
+    private int removeIngredients(Inventory inv, AbstractRecipe recipe, int repetitions) {
+        ItemStack ingredient = recipe.getIngredients().get(0);
+        int amount = Math.max(1, ingredient.getAmount());
+
+        ItemStack removed = ingredient.clone();
+        removed.setAmount(amount * repetitions);
+
+        int missing = 0;
+        for (ItemStack leftover : inv.removeItem(removed).values()) {
+            missing += leftover.getAmount();
+        }
+
+        int removedAmount = amount * repetitions - missing;
+        // only whole repetitions are processed
+        if (removedAmount % amount != 0) {
+            putBack(inv, ingredient, removedAmount % amount);
+        }
+
+        return removedAmount / amount;
+    }
+
+    private void returnIngredients(Inventory inv, AbstractRecipe recipe, int repetitions) {
+        ItemStack ingredient = recipe.getIngredients().get(0);
+        putBack(inv, ingredient, Math.max(1, ingredient.getAmount()) * repetitions);
+    }
+
+    private void putBack(Inventory inv, ItemStack ingredient, int amount) {
+        // removed items were similar to the ingredient, so they fit where they came from
+        ItemStack item = ingredient.clone();
+        item.setAmount(amount);
+        inv.addItem(item);
+    }
+
+    /**
+     * Counts how many times each recipe can be processed with the contents of given {@link Inventory}.
+     * Only recipes with a single ingredient are counted, which is true for all combs.
+     */
+    @Nonnull
+    private Map<AbstractRecipe, Integer> groupByRecipe(Inventory inv) {
+        Map<AbstractRecipe, Integer> groups = new LinkedHashMap<>();
+        for (ItemStack item : inv.getContents()) {
+            if (item == null || item.getType().isAir()) {
+                continue;
+            }
+
+            AbstractRecipe recipe = recipeIndex.find(Collections.singletonList(item));
+            if (recipe != null && recipe.getIngredients().size() == 1) {
+                int repetitions = item.getAmount() / Math.max(1, recipe.getIngredients().get(0).getAmount());
+                if (repetitions > 0) {
+                    groups.merge(recipe, repetitions, Integer::sum);
+                }
+            }
+        }
+
+        return groups;
+    }
+
     @Nonnull
     public List<AbstractRecipe> getCentrifugeRecipes() {
         return centrifugeRecipes;
@@ -0,0 +1,55 @@
+package cz.martinbrom.slimybees.listeners;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import cz.martinbrom.slimybees.SlimyBeesPlugin;
+import cz.martinbrom.slimybees.items.machines.BeeHive;
+import io.github.thebusybiscuit.slimefun4.api.items.SlimefunItem;
+import io.github.thebusybiscuit.slimefun4.implementation.Slimefun;
+import me.mrCookieSlime.Slimefun.api.BlockStorage;
+
+/**
+ * Pauses the {@link BeeHive}s of unloaded chunks and wakes them up again once their chunk is loaded.
+ * Hives are not ticked while their chunk is unloaded, so their operations don't progress either.
+ */
+@ParametersAreNonnullByDefault
+public class HiveChunkListener implements Listener {
+
+    public HiveChunkListener(SlimyBeesPlugin plugin) {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent e) {
+        for (Location l : getTickingLocations(e.getChunk())) {
+            SlimefunItem sfItem = BlockStorage.check(l);
+            if (sfItem instanceof BeeHive) {
+                ((BeeHive) sfItem).onChunkLoad(l.getBlock());
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        for (Location l : getTickingLocations(e.getChunk())) {
+            SlimefunItem sfItem = BlockStorage.check(l);
+            if (sfItem instanceof BeeHive) {
+                ((BeeHive) sfItem).onChunkUnload(l.getBlock());
+            }
+        }
+    }
+
+    private Iterable<Location> getTickingLocations(Chunk chunk) {
+        // only the blocks with a ticker, way less than all Slimefun blocks in the chunk
+        return Slimefun.getTickerTask().getLocations(chunk);
+    }
+
+}
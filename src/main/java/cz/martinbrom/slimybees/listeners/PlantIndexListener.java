@@ -0,0 +1,156 @@
+package cz.martinbrom.slimybees.listeners;
+
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFertilizeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import cz.martinbrom.slimybees.SlimyBeesPlugin;
+import cz.martinbrom.slimybees.core.BlockSearchService;
+
+/**
+ * Keeps the plant index of the {@link BlockSearchService} up to date.
+ * All handlers run on {@link EventPriority#MONITOR}, so they only see the final outcome of each event.
+ */
+@ParametersAreNonnullByDefault
+public class PlantIndexListener implements Listener {
+
+    private final BlockSearchService blockSearchService;
+
+    public PlantIndexListener(SlimyBeesPlugin plugin, BlockSearchService blockSearchService) {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        this.blockSearchService = blockSearchService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent e) {
+        blockSearchService.update(e.getBlockPlaced(), e.getBlockPlaced().getType());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent e) {
+        blockSearchService.update(e.getBlock(), Material.AIR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent e) {
+        blockSearchService.update(e.getBlock(), Material.AIR);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent e) {
+        update(e.getNewState());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(BlockGrowEvent e) {
+        // covers new crop stages, as well as sugar cane, melons and pumpkins growing into new blocks
+        update(e.getNewState());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent e) {
+        update(e.getNewState());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFertilize(BlockFertilizeEvent e) {
+        // e.g. flowers from bone-meal used on grass
+        updateAll(e.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent e) {
+        updateAll(e.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent e) {
+        // flowing water and lava wash plants away
+        blockSearchService.update(e.getToBlock(), e.getBlock().getType());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent e) {
+        blockSearchService.update(e.getBlock(), e.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent e) {
+        removeAll(e.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent e) {
+        removeAll(e.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent e) {
+        invalidateAll(e.getBlocks(), e.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent e) {
+        invalidateAll(e.getBlocks(), e.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        blockSearchService.removeChunk(e.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        blockSearchService.removeWorld(e.getWorld());
+    }
+
+    private void update(BlockState state) {
+        blockSearchService.update(state.getBlock(), state.getType());
+    }
+
+    private void updateAll(List<BlockState> states) {
+        for (BlockState state : states) {
+            update(state);
+        }
+    }
+
+    private void removeAll(List<Block> blocks) {
+        for (Block block : blocks) {
+            blockSearchService.update(block, Material.AIR);
+        }
+    }
+
+    private void invalidateAll(List<Block> blocks, BlockFace direction) {
+        // moved blocks end up one block further, possibly in another section
+        for (Block block : blocks) {
+            blockSearchService.invalidate(block);
+            blockSearchService.invalidate(block.getRelative(direction));
+        }
+    }
+
+}
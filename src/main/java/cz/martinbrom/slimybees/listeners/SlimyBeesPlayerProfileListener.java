@@ -3,38 +3,68 @@ package cz.martinbrom.slimybees.listeners;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerKickEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import cz.martinbrom.slimybees.SlimyBeesPlugin;
+import cz.martinbrom.slimybees.core.OfflineProfileCache;
 import cz.martinbrom.slimybees.core.SlimyBeesPlayerProfile;
 
 @ParametersAreNonnullByDefault
 public class SlimyBeesPlayerProfileListener implements Listener {
 
-    public SlimyBeesPlayerProfileListener(SlimyBeesPlugin plugin) {
+    private final OfflineProfileCache offlineProfileCache;
+
+    public SlimyBeesPlayerProfileListener(SlimyBeesPlugin plugin, OfflineProfileCache offlineProfileCache) {
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        this.offlineProfileCache = offlineProfileCache;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        // load the profile from the disk now, so the main thread doesn't have to
+        if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            SlimyBeesPlayerProfile.preload(e.getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent e) {
+        // the player is not coming after all, the preloaded profile can be evicted
+        if (e.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            markProfileOffline(e);
+        }
+    }
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent e) {
+        offlineProfileCache.remove(e.getPlayer().getUniqueId());
     }
 
     @EventHandler
     public void onDisconnect(PlayerQuitEvent e) {
-        markProfile(e);
+        markProfileOffline(e);
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onKick(PlayerKickEvent e) {
-        markProfile(e);
+        markProfileOffline(e);
     }
 
-    private void markProfile(PlayerEvent e) {
-        // find() instead of get() because we will only delete the profile
+    private void markProfileOffline(PlayerEvent e) {
+        // find() instead of get() because we will only evict the profile
         // if there is any, no need to load it for that
         SlimyBeesPlayerProfile profile = SlimyBeesPlayerProfile.find(e.getPlayer().getUniqueId());
 
         if (profile != null) {
-            profile.markForDeletion();
+            offlineProfileCache.add(profile);
         }
     }
 
@@ -1,6 +1,5 @@
 package cz.martinbrom.slimybees.setup;
 
-import java.util.Collection;
 import java.util.concurrent.ThreadLocalRandom;
 
 import javax.annotation.Nonnull;
@@ -9,8 +8,6 @@ import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.potion.PotionEffectType;
 
 import cz.martinbrom.slimybees.SlimyBeesPlugin;
@@ -120,25 +117,14 @@ public class AlleleSetup {
     }
 
     @Nonnull
-    public static AlleleEffect.EffectFunction createEffect(PotionEffectType type) {
+    public static AlleleEffect.EntityEffectFunction createEffect(PotionEffectType type) {
         return createEffect(type, 1);
     }
 
     @Nonnull
-    public static AlleleEffect.EffectFunction createEffect(PotionEffectType type, int amplifier) {
-        return (l, r) -> {
-            World world = l.getWorld();
-            if (world != null) {
-                // TODO: 19.07.21 Calling instanceof twice, wouldn't it be faster to only check inside the loop?
-                Collection<Entity> entities = world.getNearbyEntities(l, r, 1.5, r, n -> n instanceof LivingEntity && n.isValid());
-                for (Entity entity : entities) {
-                    if (entity instanceof LivingEntity) {
-                        // TODO: 19.07.21 Configurable duration?
-                        ((LivingEntity) entity).addPotionEffect(type.createEffect(400, amplifier));
-                    }
-                }
-            }
-        };
+    public static AlleleEffect.EntityEffectFunction createEffect(PotionEffectType type, int amplifier) {
+        // TODO: 19.07.21 Configurable duration?
+        return entity -> entity.addPotionEffect(type.createEffect(400, amplifier));
     }
 
 }
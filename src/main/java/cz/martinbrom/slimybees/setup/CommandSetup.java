@@ -6,9 +6,12 @@ import cz.martinbrom.slimybees.SlimyBeesPlugin;
 import cz.martinbrom.slimybees.commands.AlterCommand;
 import cz.martinbrom.slimybees.commands.AnalyzeCommand;
 import cz.martinbrom.slimybees.commands.CommandTabExecutor;
+import cz.martinbrom.slimybees.commands.CompactCommand;
 import cz.martinbrom.slimybees.commands.DiscoverCommand;
 import cz.martinbrom.slimybees.commands.GlobalProgressCommand;
+import cz.martinbrom.slimybees.commands.LeaderboardCommand;
 import cz.martinbrom.slimybees.commands.MakeUnknownCommand;
+import cz.martinbrom.slimybees.commands.StorageCommand;
 import cz.martinbrom.slimybees.core.BeeDiscoveryService;
 import cz.martinbrom.slimybees.core.genetics.alleles.AlleleRegistry;
 
@@ -33,9 +36,13 @@ public class CommandSetup {
         CommandTabExecutor tabExecutor = plugin.getCommandTabExecutor();
         tabExecutor.registerCommand(new AlterCommand(alleleRegistry, SlimyBeesPlugin.getBeeGeneticService()));
         tabExecutor.registerCommand(new AnalyzeCommand(SlimyBeesPlugin.getBeeAnalysisService()));
+        tabExecutor.registerCommand(new CompactCommand(SlimyBeesPlugin.getPlayerDataStorage(), alleleRegistry,
+                SlimyBeesPlugin.getRegistry(), SlimyBeesPlugin.getProfileSaveService()));
         tabExecutor.registerCommand(new DiscoverCommand(discoveryService, alleleRegistry));
         tabExecutor.registerCommand(new GlobalProgressCommand(discoveryService, alleleRegistry));
+        tabExecutor.registerCommand(new LeaderboardCommand(discoveryService, alleleRegistry));
         tabExecutor.registerCommand(new MakeUnknownCommand(SlimyBeesPlugin.getBeeLoreService()));
+        tabExecutor.registerCommand(new StorageCommand(SlimyBeesPlugin.getProfileSaveService()));
 
         plugin.getCommand("slimybees").setExecutor(tabExecutor);
         plugin.getCommand("slimybees").setTabCompleter(tabExecutor);
@@ -172,7 +172,7 @@ public class ItemSetup {
                 SlimefunItems.PLASTIC_SHEET, SlimefunItems.LARGE_CAPACITOR, SlimefunItems.PLASTIC_SHEET,
                 SlimefunItems.STEEL_PLATE, ItemStacks.ELECTRIC_CENTRIFUGE, SlimefunItems.STEEL_PLATE,
                 SlimefunItems.PLASTIC_SHEET, SlimefunItems.ELECTRIC_MOTOR, SlimefunItems.PLASTIC_SHEET });
-        elCentrifuge2.setProcessingSpeed(4).setCapacity(512).setEnergyConsumption(18).register(plugin);
+        elCentrifuge2.setProcessingSpeed(4).setCapacity(512).setEnergyConsumption(18).setBatchSize(8).register(plugin);
 
         for (AbstractRecipe recipe : centrifuge.getCentrifugeRecipes()) {
             elCentrifuge.registerRecipe(recipe.copy());
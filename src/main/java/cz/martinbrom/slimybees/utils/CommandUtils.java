@@ -0,0 +1,45 @@
+package cz.martinbrom.slimybees.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.bukkit.ChatColor;
+
+/**
+ * This class contains useful functions for paginated command output.
+ */
+@ParametersAreNonnullByDefault
+public class CommandUtils {
+
+    public static final int PAGE_SIZE = 10;
+
+    // prevent instantiation
+    private CommandUtils() {}
+
+    /**
+     * Reads a page number given by the player (starting from one) from command arguments.
+     * Missing or invalid numbers default to the first page, too high numbers to the last page.
+     *
+     * @param args The command arguments
+     * @param index The index of the page number argument
+     * @param pageCount The number of pages
+     * @return The page index, starting from zero
+     */
+    public static int parsePage(String[] args, int index, int pageCount) {
+        if (args.length <= index) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, Math.min(pageCount, Integer.parseInt(args[index])) - 1);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Nonnull
+    public static String formatPageFooter(int page, int pageCount) {
+        return ChatColor.DARK_GRAY + "第 " + (page + 1) + " / " + pageCount + " 页";
+    }
+
+}
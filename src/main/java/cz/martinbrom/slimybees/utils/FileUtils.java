@@ -0,0 +1,45 @@
+package cz.martinbrom.slimybees.utils;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * This class contains useful functions for writing data files.
+ */
+@ParametersAreNonnullByDefault
+public class FileUtils {
+
+    // prevent instantiation
+    private FileUtils() {}
+
+    /**
+     * Replaces the content of given file with given data.
+     * The data is written to a temporary file first and then moved over the original file,
+     * so the file is never left half-written, even if the server crashes while writing.
+     *
+     * @param file The {@link Path} of the written file
+     * @param data The new content of the file
+     * @throws IOException If the file cannot be written
+     */
+    public static void writeAtomically(Path file, byte[] data) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, data);
+
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package cz.martinbrom.slimybees.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * This class contains useful functions for {@link ItemStack} manipulation.
+ */
+@ParametersAreNonnullByDefault
+public class ItemStackUtils {
+
+    // prevent instantiation
+    private ItemStackUtils() {}
+
+    /**
+     * Creates {@link ItemStack}s containing given amounts of given items.
+     * Identical items are merged into as few {@link ItemStack}s as their max stack size allows.
+     * The amounts of the given {@link ItemStack}s are ignored.
+     *
+     * @param items The items to create
+     * @param amounts The total amount of each item (in the same order), zero or negative amounts are skipped
+     * @return The created {@link ItemStack}s
+     */
+    @Nonnull
+    public static List<ItemStack> createStacks(List<ItemStack> items, int[] amounts) {
+        Validate.notNull(items, "物品不能为空!");
+        Validate.notNull(amounts, "数量不能为空!");
+        Validate.isTrue(items.size() == amounts.length, "每个物品都需要一个数量!");
+
+        List<ItemStack> result = new ArrayList<>();
+        boolean[] merged = new boolean[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            int amount = amounts[i];
+            if (amount <= 0 || merged[i]) {
+                continue;
+            }
+
+            // the same item can be listed multiple times (e.g. with different chances)
+            ItemStack item = items.get(i);
+            for (int j = i + 1; j < amounts.length; j++) {
+                if (amounts[j] > 0 && !merged[j] && item.isSimilar(items.get(j))) {
+                    amount += amounts[j];
+                    merged[j] = true;
+                }
+            }
+
+            int maxStackSize = Math.max(1, item.getMaxStackSize());
+            while (amount > 0) {
+                ItemStack stack = item.clone();
+                stack.setAmount(Math.min(amount, maxStackSize));
+                result.add(stack);
+
+                amount -= stack.getAmount();
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,59 @@
+package cz.martinbrom.slimybees.utils;
+
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+import org.apache.commons.lang.Validate;
+
+@ParametersAreNonnullByDefault
+public class RandomUtils {
+
+    // prevent instantiation
+    private RandomUtils() {}
+
+    /**
+     * Returns the number of successes in given number of independent trials with the same chance of success,
+     * so a number from the binomial distribution.
+     * Instead of rolling for each trial, it jumps from one success to the next one,
+     * so it takes about as many steps as there are successes (or failures, whichever is rarer).
+     *
+     * @param random The {@link Random} to use
+     * @param trials Number of trials
+     * @param chance Chance of success of each trial, values outside of the 0 - 1 range are clamped
+     * @return Number of successful trials
+     */
+    public static int nextBinomial(Random random, int trials, double chance) {
+        Validate.notNull(random, "随机数生成器不能为空!");
+        Validate.isTrue(trials >= 0, "试验次数不能为负数!");
+
+        if (trials == 0 || chance <= 0) {
+            return 0;
+        }
+
+        if (chance >= 1) {
+            return trials;
+        }
+
+        // count the rarer outcome
+        if (chance > 0.5) {
+            return trials - nextBinomial(random, trials, 1 - chance);
+        }
+
+        // the number of failures between two successes is geometrically distributed
+        double logFailureChance = Math.log1p(-chance);
+        int successes = 0;
+        long position = 0;
+        while (true) {
+            // 1 - nextDouble() is never 0, so the logarithm is always finite
+            long failures = (long) Math.floor(Math.log(1 - random.nextDouble()) / logFailureChance);
+            position += failures + 1;
+            if (position > trials || position <= 0) {
+                return successes;
+            }
+
+            successes++;
+        }
+    }
+
+}